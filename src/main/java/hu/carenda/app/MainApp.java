@@ -1,5 +1,6 @@
 package hu.carenda.app;
 
+import hu.carenda.app.repository.ServiceJobCardDao;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -21,6 +22,7 @@ public class MainApp extends Application {
     private static final String APP_CSS_PATH = "/hu/carenda/app/css/app.css";
     private static final double LOGIN_WIDTH = 420;
     private static final double LOGIN_HEIGHT = 260;
+    private static final String REBUILD_TOTALS_ARG = "--rebuild-totals";
 
     /**
      * A JavaFX alkalmazás fő belépési pontja.
@@ -91,9 +93,17 @@ public class MainApp extends Application {
      * A Java alkalmazás 'main' metódusa.
      * Ez indítja el a JavaFX Application.launch() metódusát.
      *
-     * @param args Parancssori argumentumok (nincs használatban).
+     * Karbantartó parancs (felület nélkül, majd kilép):
+     * {@code --rebuild-totals} – a munkalap végösszegek újraszámolása.
+     *
+     * @param args Parancssori argumentumok.
      */
     public static void main(String[] args) {
+        if (args.length > 0 && REBUILD_TOTALS_ARG.equals(args[0])) {
+            int n = new ServiceJobCardDao().rebuildTotals();
+            System.out.println("Munkalap végösszegek újraszámolva: " + n + " munkalap.");
+            return;
+        }
         launch(args);
     }
 }
@@ -0,0 +1,332 @@
+package hu.carenda.app.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Korlátos méretű, validáló JDBC kapcsolatkészlet (connection pool).
+ *
+ * A kiadott kapcsolatok proxy-k: a close() hívás NEM zárja le a fizikai
+ * kapcsolatot, hanem visszaadja azt a készletbe. Így a DAO-k megszokott
+ * try-with-resources mintája változatlanul használható, de nem nyitjuk
+ * újra az SQLite fájlt minden egyes lekérdezéshez.
+ *
+ * Minden fizikai kapcsolathoz tartozik egy StatementCache is, így az
+ * azonos SQL szövegű prepareStatement hívások újrahasznosítják a már
+ * lefordított utasítást.
+ */
+public final class ConnectionPool {
+
+    /** Alapértelmezett várakozási idő egy szabad kapcsolatra. */
+    private static final long ACQUIRE_TIMEOUT_MS = 10_000;
+
+    /** A validáció (isValid) időkorlátja másodpercben. */
+    private static final int VALIDATION_TIMEOUT_SEC = 2;
+
+    /** Fizikai kapcsolatonként ennyi előkészített utasítást tartunk meg (LRU). */
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final String name;
+    private final String url;
+    private final Properties props;
+    private final int maxSize;
+
+    /** A szabad (visszaadott) fizikai kapcsolatok. LIFO: a legutóbb használtat adjuk ki újra. */
+    private final LinkedBlockingDeque<Physical> idle = new LinkedBlockingDeque<>();
+
+    /** Ennyi kapcsolat lehet egyszerre kiadva vagy létrehozva (korlát). */
+    private final Semaphore permits;
+
+    private volatile boolean closed = false;
+
+    // --- Statisztika ---
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final StatementCache.Counters statements = new StatementCache.Counters();
+
+    /** Egy fizikai kapcsolat és a hozzá tartozó utasítás-gyorsítótár. */
+    private record Physical(Connection conn, StatementCache cache) {
+    }
+
+    /**
+     * @param name    A készlet neve (naplózáshoz, statisztikához).
+     * @param url     A JDBC URL.
+     * @param props   A kapcsolat tulajdonságai (pl. SQLiteConfig.toProperties()).
+     * @param maxSize A készlet maximális mérete (legalább 1).
+     */
+    public ConnectionPool(String name, String url, Properties props, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("A pool mérete legalább 1 kell legyen: " + maxSize);
+        }
+        this.name = name;
+        this.url = url;
+        this.props = props;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Kiad egy kapcsolatot a készletből. Ha nincs szabad, újat nyit
+     * (a korlátig), egyébként vár, amíg valaki visszaad egyet.
+     *
+     * @return Egy pool-ozott kapcsolat, amelynek close() hívása visszaadja azt a készletbe.
+     * @throws SQLException ha időkorláton belül nem kapunk kapcsolatot, vagy a megnyitás sikertelen.
+     */
+    public Connection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("A kapcsolatkészlet (" + name + ") már le van zárva.");
+        }
+
+        long start = System.nanoTime();
+        boolean ok;
+        if (permits.tryAcquire()) {
+            ok = true;
+        } else {
+            waited.incrementAndGet();
+            try {
+                ok = permits.tryAcquire(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Megszakítva várakozás közben (" + name + ")", ie);
+            }
+            waitNanos.addAndGet(System.nanoTime() - start);
+        }
+        if (!ok) {
+            timeouts.incrementAndGet();
+            throw new SQLException("Nincs szabad adatbázis-kapcsolat " + ACQUIRE_TIMEOUT_MS
+                    + " ms alatt (" + name + ", max=" + maxSize + ")");
+        }
+
+        try {
+            Physical physical = takeValidIdle();
+            if (physical == null) {
+                physical = open();
+            }
+            borrowed.incrementAndGet();
+            return wrap(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Kivesz egy érvényes, szabad kapcsolatot; az érvénytelenné váltakat eldobja.
+     */
+    private Physical takeValidIdle() {
+        Physical c;
+        while ((c = idle.pollFirst()) != null) {
+            if (isUsable(c.conn())) {
+                return c;
+            }
+            discard(c);
+        }
+        return null;
+    }
+
+    /**
+     * Új fizikai kapcsolat nyitása a megadott beállításokkal.
+     */
+    private Physical open() throws SQLException {
+        Connection c = DriverManager.getConnection(url, props);
+        created.incrementAndGet();
+        return new Physical(c, new StatementCache(c, STATEMENT_CACHE_SIZE, statements));
+    }
+
+    private boolean isUsable(Connection c) {
+        try {
+            return !c.isClosed() && c.isValid(VALIDATION_TIMEOUT_SEC);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A proxy hívja meg close()-kor: alaphelyzetbe állítja és visszarakja a kapcsolatot.
+     */
+    private void release(Physical physical) {
+        try {
+            Connection c = physical.conn();
+            if (closed || c.isClosed()) {
+                discard(physical);
+                return;
+            }
+            // Félbehagyott tranzakciót nem adunk tovább a következő használónak
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            idle.offerFirst(physical);
+        } catch (SQLException e) {
+            discard(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(Physical c) {
+        discarded.incrementAndGet();
+        c.cache().closeAll();
+        try {
+            c.conn().close();
+        } catch (SQLException ignored) {
+            // Eldobott kapcsolat, nincs mit tenni
+        }
+    }
+
+    /**
+     * Lezárja a készletet és az összes szabad kapcsolatot.
+     * A még kiadott kapcsolatok visszaadáskor zárulnak le.
+     */
+    public void shutdown() {
+        closed = true;
+        Physical c;
+        while ((c = idle.pollFirst()) != null) {
+            discard(c);
+        }
+    }
+
+    /**
+     * Pillanatkép a készlet állapotáról és forgalmáról.
+     *
+     * @return Egy PoolStats rekord.
+     */
+    public PoolStats stats() {
+        int available = permits.availablePermits();
+        return new PoolStats(
+                name,
+                maxSize,
+                maxSize - available,
+                idle.size(),
+                created.get(),
+                discarded.get(),
+                borrowed.get(),
+                waited.get(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.get()),
+                timeouts.get(),
+                statements.hits.get(),
+                statements.misses.get(),
+                statements.evictions.get()
+        );
+    }
+
+    /**
+     * A készlet statisztikái.
+     *
+     * @param name        A készlet neve.
+     * @param maxSize     Maximális méret.
+     * @param active      Jelenleg kiadott kapcsolatok száma.
+     * @param idle        Szabad, újrahasznosítható kapcsolatok száma.
+     * @param created     Összesen megnyitott fizikai kapcsolatok.
+     * @param discarded   Érvénytelenség/hiba miatt eldobott kapcsolatok.
+     * @param borrowed    Összes kiadás (acquire) száma.
+     * @param waited      Hányszor kellett várni szabad kapcsolatra.
+     * @param waitMillis  Várakozással töltött összidő (ms).
+     * @param timeouts    Időtúllépéssel végződött kérések száma.
+     * @param stmtHits    Gyorsítótárból kiszolgált prepareStatement hívások.
+     * @param stmtMisses  Újonnan előkészített (fordított) utasítások.
+     * @param stmtEvictions Az LRU által kiürített utasítások.
+     */
+    public record PoolStats(String name, int maxSize, int active, int idle,
+                            long created, long discarded, long borrowed,
+                            long waited, long waitMillis, long timeouts,
+                            long stmtHits, long stmtMisses, long stmtEvictions) {
+
+        /**
+         * @return Az utasítás-gyorsítótár találati aránya (0..1).
+         */
+        public double stmtHitRatio() {
+            long total = stmtHits + stmtMisses;
+            return total == 0 ? 0.0 : (double) stmtHits / total;
+        }
+    }
+
+    // --- Proxy ---
+
+    private Connection wrap(Physical physical) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledConnectionHandler(physical));
+    }
+
+    /**
+     * A kiadott kapcsolat proxy-ja. A close() visszaadja a fizikai kapcsolatot,
+     * a prepareStatement(sql) és prepareStatement(sql, int) hívásokat az
+     * utasítás-gyorsítótár szolgálja ki, minden más hívást továbbít
+     * (lezárás után hibát dob).
+     */
+    private final class PooledConnectionHandler implements InvocationHandler {
+
+        private final Physical physical;
+        private boolean logicallyClosed = false;
+
+        PooledConnectionHandler(Physical physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!logicallyClosed) {
+                        logicallyClosed = true;
+                        release(physical);
+                    }
+                    return null;
+                case "isClosed":
+                    return logicallyClosed || physical.conn().isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + name + "]" + physical.conn();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(physical.conn())) {
+                        return physical.conn();
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(physical.conn())) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (logicallyClosed) {
+                throw new SQLException("A kapcsolat már vissza lett adva a készletbe (" + name + ")");
+            }
+            if ("prepareStatement".equals(method.getName())) {
+                Class<?>[] types = method.getParameterTypes();
+                if (types.length == 1) {
+                    return physical.cache().prepare((String) args[0], -1, (Connection) proxy);
+                }
+                if (types.length == 2 && types[1] == int.class) {
+                    return physical.cache().prepare((String) args[0], (Integer) args[1], (Connection) proxy);
+                }
+            }
+            try {
+                return method.invoke(physical.conn(), args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package hu.carenda.app.db;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Egy számozott séma-migrációs lépés.
+ *
+ * A lépés SQL utasítások listájából és egy opcionális Java lépésből áll
+ * (pl. adatfeltöltés, ahol jelszó hash-t kell számolni). Az ellenőrzőösszeg
+ * csak az SQL szövegekből készül: egy már lefuttatott lépés SQL-jét utólag
+ * nem szabad módosítani, helyette új lépést kell felvenni.
+ *
+ * @param version     A lépés sorszáma (szigorúan növekvő, 1-től).
+ * @param description Rövid leírás (a schema_version táblába kerül).
+ * @param statements  A végrehajtandó SQL utasítások, sorrendben.
+ * @param step        Az SQL után futó Java lépés, vagy null.
+ */
+record Migration(int version, String description, List<String> statements, Step step) {
+
+    /**
+     * Egy migráció Java kódban megírt része. Ugyanabban a tranzakcióban fut,
+     * mint a lépés SQL utasításai.
+     */
+    @FunctionalInterface
+    interface Step {
+        void apply(Connection c) throws SQLException;
+    }
+
+    /**
+     * Csak SQL utasításokból álló lépés.
+     */
+    static Migration sql(int version, String description, String... statements) {
+        return new Migration(version, description, List.of(statements), null);
+    }
+
+    /**
+     * Az SQL utasítások SHA-256 ellenőrzőösszege (hex).
+     *
+     * @return A lépés ellenőrzőösszege.
+     */
+    String checksum() {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String s : statements) {
+                md.update(s.strip().getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0); // elválasztó, hogy a határok is számítsanak
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 nem elérhető", e);
+        }
+    }
+}
@@ -0,0 +1,625 @@
+package hu.carenda.app.db;
+
+import hu.carenda.app.service.PasswordHasher;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Az alkalmazás összes séma-migrációs lépése, verziószám szerint.
+ *
+ * Új index, oszlop, trigger vagy tábla felvételéhez a lista VÉGÉRE kell
+ * egy új lépést írni; a már kiadott lépéseket módosítani tilos (a Migrator
+ * ellenőrzőösszeggel ellenőrzi őket).
+ */
+final class Migrations {
+
+    private Migrations() {
+    }
+
+    /**
+     * @return Az összes lépés, növekvő verziószám szerint.
+     */
+    static List<Migration> all() {
+        return List.of(
+                v1Baseline(),
+                v2AppointmentEpochMinutes(),
+                v3FullTextSearch(),
+                v4JobCardCreatedIndex(),
+                v5JobCardTotalsTable(),
+                v6JobCardSequence()
+        );
+    }
+
+    /**
+     * V1: Az eredeti alap séma (táblák, indexek, nézet) és az admin felhasználó.
+     * Minden utasítás idempotens, így a schema_version előtti adatbázisokon
+     * is biztonságosan lefut (azokon csak nyilvántartásba veszi az állapotot).
+     */
+    private static Migration v1Baseline() {
+        return new Migration(1, "Alap séma és admin felhasználó", List.of(
+                // --- TÁBLÁK LÉTREHOZÁSA ---
+
+                // USERS
+                """
+                    CREATE TABLE IF NOT EXISTS users (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      username TEXT UNIQUE NOT NULL,
+                      password_hash TEXT NOT NULL,
+                      full_name TEXT,
+                      role_name TEXT,
+                      must_change_password INTEGER NOT NULL DEFAULT 1
+                    );
+                    """,
+
+                // CUSTOMERS
+                """
+                    CREATE TABLE IF NOT EXISTS customers (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      name TEXT NOT NULL,
+                      phone TEXT,
+                      email TEXT
+                    );
+                    """,
+
+                // VEHICLES
+                """
+                    CREATE TABLE IF NOT EXISTS vehicles (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      plate TEXT NOT NULL,
+                      vin TEXT,
+                      engine_no TEXT,
+                      brand TEXT,
+                      model TEXT,
+                      year INTEGER,
+                      fuel_type TEXT,
+                      customer_id INTEGER,
+                      FOREIGN KEY(customer_id) REFERENCES customers(id) ON DELETE SET NULL
+                    );
+                    """,
+
+                // APPOINTMENTS
+                """
+                    CREATE TABLE IF NOT EXISTS appointments (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      start_ts TEXT NOT NULL,
+                      duration INTEGER NOT NULL DEFAULT 60,
+                      subject TEXT,
+                      note TEXT,
+                      status TEXT NOT NULL DEFAULT 'PLANNED',
+                      vehicle_id INTEGER,
+                      customer_id INTEGER,
+                      FOREIGN KEY(vehicle_id) REFERENCES vehicles(id) ON DELETE SET NULL,
+                      FOREIGN KEY(customer_id) REFERENCES customers(id) ON DELETE SET NULL
+                    );
+                    """,
+
+                // SERVICE JOBCARD (Munkalap)
+                """
+                    CREATE TABLE IF NOT EXISTS servicejobcard (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      jobcard_no TEXT UNIQUE,
+                      appointment_id INTEGER,
+                      vehicle_id INTEGER,
+                      customer_id INTEGER,
+                      fault_desc TEXT,
+                      repair_note TEXT,
+                      diagnosis TEXT,
+                      internal_note TEXT,
+                      status TEXT NOT NULL DEFAULT 'OPEN',
+                      assignee_user_id INTEGER,
+                      created_at TEXT NOT NULL,
+                      updated_at TEXT,
+                      finished_at TEXT,
+                      odometer_km INTEGER,
+                      fuel_level_eighths INTEGER CHECK(fuel_level_eighths BETWEEN 0 AND 8),
+                      currency_code TEXT NOT NULL DEFAULT 'HUF',
+                      advance_cents INTEGER NOT NULL DEFAULT 0,
+                      FOREIGN KEY(appointment_id) REFERENCES appointments(id) ON DELETE SET NULL,
+                      FOREIGN KEY(vehicle_id) REFERENCES vehicles(id) ON DELETE SET NULL,
+                      FOREIGN KEY(customer_id) REFERENCES customers(id) ON DELETE SET NULL,
+                      FOREIGN KEY(assignee_user_id) REFERENCES users(id) ON DELETE SET NULL
+                    );
+                    """,
+
+                // Munkadíjak (Work Description)
+                """
+                    CREATE TABLE IF NOT EXISTS servicejobcard_workdesc (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      sjc_id INTEGER NOT NULL,
+                      name TEXT NOT NULL,
+                      hours NUMERIC NOT NULL DEFAULT 0,
+                      rate_cents INTEGER NOT NULL DEFAULT 0,
+                      vat_percent INTEGER NOT NULL DEFAULT 27 CHECK(vat_percent IN (0,5,7,18,27)),
+                      sort_order INTEGER NOT NULL DEFAULT 0,
+                      FOREIGN KEY(sjc_id) REFERENCES servicejobcard(id) ON DELETE CASCADE
+                    );
+                    """,
+
+                // Alkatrészek (Parts)
+                """
+                    CREATE TABLE IF NOT EXISTS servicejobcard_part (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      sjc_id INTEGER NOT NULL,
+                      sku TEXT,
+                      name TEXT NOT NULL,
+                      quantity NUMERIC NOT NULL DEFAULT 1,
+                      unit_price_cents INTEGER NOT NULL DEFAULT 0,
+                      vat_percent INTEGER NOT NULL DEFAULT 27 CHECK(vat_percent IN (0,5,7,18,27)),
+                      sort_order INTEGER NOT NULL DEFAULT 0,
+                      FOREIGN KEY(sjc_id) REFERENCES servicejobcard(id) ON DELETE CASCADE
+                    );
+                    """,
+
+                // --- INDEXEK LÉTREHOZÁSA ---
+                "CREATE INDEX IF NOT EXISTS idx_customers_name ON customers(name)",
+                "CREATE INDEX IF NOT EXISTS idx_customers_phone ON customers(phone)",
+                "CREATE INDEX IF NOT EXISTS idx_customers_email ON customers(email)",
+                "CREATE INDEX IF NOT EXISTS idx_vehicles_plate ON vehicles(plate)",
+                "CREATE INDEX IF NOT EXISTS idx_vehicles_customer ON vehicles(customer_id)",
+                "CREATE INDEX IF NOT EXISTS idx_appt_vehicle ON appointments(vehicle_id)",
+                "CREATE INDEX IF NOT EXISTS idx_appt_customer ON appointments(customer_id)",
+                "CREATE INDEX IF NOT EXISTS idx_appt_start ON appointments(start_ts)",
+                "CREATE UNIQUE INDEX IF NOT EXISTS uq_sjc_no ON servicejobcard(jobcard_no)",
+                "CREATE INDEX IF NOT EXISTS idx_sjc_appt ON servicejobcard(appointment_id)",
+                "CREATE INDEX IF NOT EXISTS idx_sjc_vehicle ON servicejobcard(vehicle_id)",
+                "CREATE INDEX IF NOT EXISTS idx_sjc_customer ON servicejobcard(customer_id)",
+
+                // --- NÉZET (VIEW) LÉTREHOZÁSA ---
+                "DROP VIEW IF EXISTS view_sjc_totals",
+                """
+                      CREATE VIEW view_sjc_totals AS
+                      WITH work_desc AS (
+                          SELECT
+                              sjc_id,
+                              CAST(ROUND(hours * rate_cents) AS INTEGER) AS net_cents,
+                              CAST(ROUND(hours * rate_cents * vat_percent / 100.0) AS INTEGER) AS vat_cents
+                          FROM servicejobcard_workdesc
+                      ),
+                      work_desc_sum AS (
+                          SELECT sjc_id,
+                                 SUM(net_cents) AS work_net_cents,
+                                 SUM(vat_cents) AS work_vat_cents
+                          FROM work_desc
+                          GROUP BY sjc_id
+                      ),
+                      parts AS (
+                          SELECT
+                              sjc_id,
+                              CAST(ROUND(quantity * unit_price_cents) AS INTEGER) AS net_cents,
+                              CAST(ROUND(quantity * unit_price_cents * vat_percent / 100.0) AS INTEGER) AS vat_cents
+                          FROM servicejobcard_part
+                      ),
+                      parts_sum AS (
+                          SELECT sjc_id,
+                                 SUM(net_cents) AS parts_net_cents,
+                                 SUM(vat_cents) AS parts_vat_cents
+                          FROM parts
+                          GROUP BY sjc_id
+                      )
+                      SELECT
+                          s.id AS sjc_id,
+                          IFNULL(w.work_net_cents,0) + IFNULL(p.parts_net_cents,0) AS subtotal_net_cents,
+                          IFNULL(w.work_vat_cents,0) + IFNULL(p.parts_vat_cents,0) AS vat_cents,
+                          (IFNULL(w.work_net_cents,0) + IFNULL(p.parts_net_cents,0)
+                            + IFNULL(w.work_vat_cents,0) + IFNULL(p.parts_vat_cents,0)) AS total_gross_cents,
+                          s.advance_cents,
+                          (IFNULL(w.work_net_cents,0) + IFNULL(p.parts_net_cents,0)
+                            + IFNULL(w.work_vat_cents,0) + IFNULL(p.parts_vat_cents,0))
+                            - IFNULL(s.advance_cents,0) AS amount_due_cents
+                      FROM servicejobcard s
+                      LEFT JOIN work_desc_sum w ON w.sjc_id = s.id
+                      LEFT JOIN parts_sum p ON p.sjc_id = s.id;
+                    """
+        ), Migrations::seedAdmin);
+    }
+
+    /**
+     * V2: Az időpontok kezdete és vége egész percként (epoch perc), összetett indexszel.
+     * A szöveges start_ts megmarad (megjelenítéshez), a tartomány- és átfedés-lekérdezések
+     * viszont a számokon futnak, így használni tudják az indexet.
+     */
+    private static Migration v2AppointmentEpochMinutes() {
+        return Migration.sql(2, "Időpontok epoch perc oszlopai és indexe",
+                "ALTER TABLE appointments ADD COLUMN start_epoch_min INTEGER",
+                "ALTER TABLE appointments ADD COLUMN end_epoch_min INTEGER",
+                """
+                    UPDATE appointments
+                       SET start_epoch_min = CAST(strftime('%s', start_ts) AS INTEGER) / 60,
+                           end_epoch_min   = CAST(strftime('%s', start_ts) AS INTEGER) / 60 + duration
+                     WHERE strftime('%s', start_ts) IS NOT NULL
+                    """,
+                "CREATE INDEX IF NOT EXISTS idx_appt_epoch ON appointments(start_epoch_min, end_epoch_min)"
+        );
+    }
+
+    /**
+     * V3: FTS5 (trigram) teljes szöveges keresőindexek az ügyfelekhez, járművekhez,
+     * időpontokhoz és munkalapokhoz.
+     *
+     * Minden indexsor rowid-ja a forrás tábla id-ja. A dokumentumok a JOIN-olt
+     * szövegeket is tartalmazzák (pl. a jármű tulajdonosának nevét), ezért a triggerek
+     * a kapcsolódó táblák változásakor (pl. ügyfél átnevezése) is frissítik őket.
+     * A trigram tokenizáló részszöveg-egyezést ad (mint a korábbi LIKE '%q%'),
+     * kis- és nagybetűtől függetlenül.
+     */
+    private static Migration v3FullTextSearch() {
+        return Migration.sql(3, "FTS5 keresőindexek és szinkron triggerek",
+                // --- INDEX TÁBLÁK ---
+                "CREATE VIRTUAL TABLE customers_fts USING fts5(name, phone, email, tokenize='trigram')",
+                "CREATE VIRTUAL TABLE vehicles_fts USING fts5(plate, brand, model, owner_name, tokenize='trigram')",
+                "CREATE VIRTUAL TABLE appointments_fts USING fts5(customer_name, plate, status, note, tokenize='trigram')",
+                "CREATE VIRTUAL TABLE servicejobcard_fts USING fts5(jobcard_no, plate, brand, model, owner_name, tokenize='trigram')",
+
+                // --- MEGLÉVŐ ADATOK INDEXELÉSE ---
+                """
+                    INSERT INTO customers_fts(rowid, name, phone, email)
+                    SELECT id, name, phone, email FROM customers
+                    """,
+                """
+                    INSERT INTO vehicles_fts(rowid, plate, brand, model, owner_name)
+                    SELECT v.id, v.plate, v.brand, v.model, c.name
+                      FROM vehicles v LEFT JOIN customers c ON c.id = v.customer_id
+                    """,
+                """
+                    INSERT INTO appointments_fts(rowid, customer_name, plate, status, note)
+                    SELECT a.id, c.name, v.plate, a.status, a.note
+                      FROM appointments a
+                      LEFT JOIN customers c ON c.id = a.customer_id
+                      LEFT JOIN vehicles  v ON v.id = a.vehicle_id
+                    """,
+                """
+                    INSERT INTO servicejobcard_fts(rowid, jobcard_no, plate, brand, model, owner_name)
+                    SELECT s.id, s.jobcard_no, v.plate, v.brand, v.model, c.name
+                      FROM servicejobcard s
+                      LEFT JOIN customers c ON c.id = s.customer_id
+                      LEFT JOIN vehicles  v ON v.id = s.vehicle_id
+                    """,
+
+                // --- CUSTOMERS ---
+                """
+                    CREATE TRIGGER trg_customers_fts_ai AFTER INSERT ON customers BEGIN
+                      INSERT INTO customers_fts(rowid, name, phone, email)
+                      VALUES (new.id, new.name, new.phone, new.email);
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_customers_fts_au AFTER UPDATE OF name, phone, email ON customers BEGIN
+                      UPDATE customers_fts SET name = new.name, phone = new.phone, email = new.email
+                       WHERE rowid = new.id;
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_customers_fts_au_name AFTER UPDATE OF name ON customers
+                    WHEN old.name IS NOT new.name BEGIN
+                      UPDATE vehicles_fts SET owner_name = new.name
+                       WHERE rowid IN (SELECT id FROM vehicles WHERE customer_id = new.id);
+                      UPDATE appointments_fts SET customer_name = new.name
+                       WHERE rowid IN (SELECT id FROM appointments WHERE customer_id = new.id);
+                      UPDATE servicejobcard_fts SET owner_name = new.name
+                       WHERE rowid IN (SELECT id FROM servicejobcard WHERE customer_id = new.id);
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_customers_fts_ad AFTER DELETE ON customers BEGIN
+                      DELETE FROM customers_fts WHERE rowid = old.id;
+                    END
+                    """,
+
+                // --- VEHICLES ---
+                """
+                    CREATE TRIGGER trg_vehicles_fts_ai AFTER INSERT ON vehicles BEGIN
+                      INSERT INTO vehicles_fts(rowid, plate, brand, model, owner_name)
+                      VALUES (new.id, new.plate, new.brand, new.model,
+                              (SELECT name FROM customers WHERE id = new.customer_id));
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_vehicles_fts_au AFTER UPDATE OF plate, brand, model, customer_id ON vehicles BEGIN
+                      UPDATE vehicles_fts
+                         SET plate = new.plate, brand = new.brand, model = new.model,
+                             owner_name = (SELECT name FROM customers WHERE id = new.customer_id)
+                       WHERE rowid = new.id;
+                      UPDATE appointments_fts SET plate = new.plate
+                       WHERE rowid IN (SELECT id FROM appointments WHERE vehicle_id = new.id);
+                      UPDATE servicejobcard_fts SET plate = new.plate, brand = new.brand, model = new.model
+                       WHERE rowid IN (SELECT id FROM servicejobcard WHERE vehicle_id = new.id);
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_vehicles_fts_ad AFTER DELETE ON vehicles BEGIN
+                      DELETE FROM vehicles_fts WHERE rowid = old.id;
+                    END
+                    """,
+
+                // --- APPOINTMENTS ---
+                """
+                    CREATE TRIGGER trg_appointments_fts_ai AFTER INSERT ON appointments BEGIN
+                      INSERT INTO appointments_fts(rowid, customer_name, plate, status, note)
+                      VALUES (new.id,
+                              (SELECT name FROM customers WHERE id = new.customer_id),
+                              (SELECT plate FROM vehicles WHERE id = new.vehicle_id),
+                              new.status, new.note);
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_appointments_fts_au AFTER UPDATE OF customer_id, vehicle_id, status, note ON appointments BEGIN
+                      UPDATE appointments_fts
+                         SET customer_name = (SELECT name FROM customers WHERE id = new.customer_id),
+                             plate = (SELECT plate FROM vehicles WHERE id = new.vehicle_id),
+                             status = new.status, note = new.note
+                       WHERE rowid = new.id;
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_appointments_fts_ad AFTER DELETE ON appointments BEGIN
+                      DELETE FROM appointments_fts WHERE rowid = old.id;
+                    END
+                    """,
+
+                // --- SERVICEJOBCARD ---
+                """
+                    CREATE TRIGGER trg_sjc_fts_ai AFTER INSERT ON servicejobcard BEGIN
+                      INSERT INTO servicejobcard_fts(rowid, jobcard_no, plate, brand, model, owner_name)
+                      VALUES (new.id, new.jobcard_no,
+                              (SELECT plate FROM vehicles WHERE id = new.vehicle_id),
+                              (SELECT brand FROM vehicles WHERE id = new.vehicle_id),
+                              (SELECT model FROM vehicles WHERE id = new.vehicle_id),
+                              (SELECT name FROM customers WHERE id = new.customer_id));
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_sjc_fts_au AFTER UPDATE OF jobcard_no, customer_id, vehicle_id ON servicejobcard BEGIN
+                      UPDATE servicejobcard_fts
+                         SET jobcard_no = new.jobcard_no,
+                             plate = (SELECT plate FROM vehicles WHERE id = new.vehicle_id),
+                             brand = (SELECT brand FROM vehicles WHERE id = new.vehicle_id),
+                             model = (SELECT model FROM vehicles WHERE id = new.vehicle_id),
+                             owner_name = (SELECT name FROM customers WHERE id = new.customer_id)
+                       WHERE rowid = new.id;
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_sjc_fts_ad AFTER DELETE ON servicejobcard BEGIN
+                      DELETE FROM servicejobcard_fts WHERE rowid = old.id;
+                    END
+                    """
+        );
+    }
+
+    /**
+     * V4: Index a munkalaplista (created_at, id) szerinti keyset lapozásához.
+     */
+    private static Migration v4JobCardCreatedIndex() {
+        return Migration.sql(4, "Munkalap lapozási index (created_at, id)",
+                "CREATE INDEX IF NOT EXISTS idx_sjc_created ON servicejobcard(created_at, id)"
+        );
+    }
+
+    /**
+     * V5: A munkalap végösszegek tárolt (materializált) táblája.
+     *
+     * A view_sjc_totals eddig minden lekérdezéskor végigösszegezte a munkadíj- és
+     * alkatrész-sorokat. A servicejobcard_totals táblát triggerek tartják naprakészen
+     * (a sorok beszúrásakor, módosításakor, törlésekor, illetve az előleg változásakor
+     * az érintett munkalap összegeit számolják újra), így a lekérdezés egyetlen
+     * elsődleges kulcsos keresés. A nézet megmarad, de már a táblából olvas.
+     * Javítás (újraszámolás) a ServiceJobCardDao.rebuildTotals() metódussal.
+     */
+    private static Migration v5JobCardTotalsTable() {
+        return Migration.sql(5, "Materializált munkalap végösszegek (servicejobcard_totals)",
+                """
+                    CREATE TABLE servicejobcard_totals (
+                      sjc_id INTEGER PRIMARY KEY,
+                      work_net_cents INTEGER NOT NULL DEFAULT 0,
+                      work_vat_cents INTEGER NOT NULL DEFAULT 0,
+                      parts_net_cents INTEGER NOT NULL DEFAULT 0,
+                      parts_vat_cents INTEGER NOT NULL DEFAULT 0,
+                      advance_cents INTEGER
+                    )
+                    """,
+                // Az újraszámoló al-lekérdezésekhez (sjc_id szerinti keresés)
+                "CREATE INDEX IF NOT EXISTS idx_workdesc_sjc ON servicejobcard_workdesc(sjc_id)",
+                "CREATE INDEX IF NOT EXISTS idx_part_sjc ON servicejobcard_part(sjc_id)",
+
+                // --- MEGLÉVŐ ADATOK ---
+                """
+                    INSERT INTO servicejobcard_totals(sjc_id, work_net_cents, work_vat_cents,
+                                                      parts_net_cents, parts_vat_cents, advance_cents)
+                    SELECT s.id,
+                           (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents) AS INTEGER)), 0)
+                              FROM servicejobcard_workdesc WHERE sjc_id = s.id),
+                           (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                              FROM servicejobcard_workdesc WHERE sjc_id = s.id),
+                           (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents) AS INTEGER)), 0)
+                              FROM servicejobcard_part WHERE sjc_id = s.id),
+                           (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                              FROM servicejobcard_part WHERE sjc_id = s.id),
+                           s.advance_cents
+                      FROM servicejobcard s
+                    """,
+
+                // --- MUNKALAP ---
+                """
+                    CREATE TRIGGER trg_sjc_totals_ai AFTER INSERT ON servicejobcard BEGIN
+                      INSERT INTO servicejobcard_totals(sjc_id, advance_cents) VALUES (new.id, new.advance_cents);
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_sjc_totals_au AFTER UPDATE OF advance_cents ON servicejobcard BEGIN
+                      UPDATE servicejobcard_totals SET advance_cents = new.advance_cents WHERE sjc_id = new.id;
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_sjc_totals_ad AFTER DELETE ON servicejobcard BEGIN
+                      DELETE FROM servicejobcard_totals WHERE sjc_id = old.id;
+                    END
+                    """,
+
+                // --- MUNKADÍJAK ---
+                """
+                    CREATE TRIGGER trg_workdesc_totals_ai AFTER INSERT ON servicejobcard_workdesc BEGIN
+                      UPDATE servicejobcard_totals
+                         SET work_net_cents = (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents) AS INTEGER)), 0)
+                                                 FROM servicejobcard_workdesc WHERE sjc_id = new.sjc_id),
+                             work_vat_cents = (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                                                 FROM servicejobcard_workdesc WHERE sjc_id = new.sjc_id)
+                       WHERE sjc_id = new.sjc_id;
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_workdesc_totals_au AFTER UPDATE OF sjc_id, hours, rate_cents, vat_percent ON servicejobcard_workdesc BEGIN
+                      UPDATE servicejobcard_totals
+                         SET work_net_cents = (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents) AS INTEGER)), 0)
+                                                 FROM servicejobcard_workdesc WHERE sjc_id = new.sjc_id),
+                             work_vat_cents = (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                                                 FROM servicejobcard_workdesc WHERE sjc_id = new.sjc_id)
+                       WHERE sjc_id = new.sjc_id;
+                      UPDATE servicejobcard_totals
+                         SET work_net_cents = (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents) AS INTEGER)), 0)
+                                                 FROM servicejobcard_workdesc WHERE sjc_id = old.sjc_id),
+                             work_vat_cents = (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                                                 FROM servicejobcard_workdesc WHERE sjc_id = old.sjc_id)
+                       WHERE sjc_id = old.sjc_id AND old.sjc_id IS NOT new.sjc_id; -- áthelyezett sor
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_workdesc_totals_ad AFTER DELETE ON servicejobcard_workdesc BEGIN
+                      UPDATE servicejobcard_totals
+                         SET work_net_cents = (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents) AS INTEGER)), 0)
+                                                 FROM servicejobcard_workdesc WHERE sjc_id = old.sjc_id),
+                             work_vat_cents = (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                                                 FROM servicejobcard_workdesc WHERE sjc_id = old.sjc_id)
+                       WHERE sjc_id = old.sjc_id;
+                    END
+                    """,
+
+                // --- ALKATRÉSZEK ---
+                """
+                    CREATE TRIGGER trg_part_totals_ai AFTER INSERT ON servicejobcard_part BEGIN
+                      UPDATE servicejobcard_totals
+                         SET parts_net_cents = (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents) AS INTEGER)), 0)
+                                                  FROM servicejobcard_part WHERE sjc_id = new.sjc_id),
+                             parts_vat_cents = (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                                                  FROM servicejobcard_part WHERE sjc_id = new.sjc_id)
+                       WHERE sjc_id = new.sjc_id;
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_part_totals_au AFTER UPDATE OF sjc_id, quantity, unit_price_cents, vat_percent ON servicejobcard_part BEGIN
+                      UPDATE servicejobcard_totals
+                         SET parts_net_cents = (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents) AS INTEGER)), 0)
+                                                  FROM servicejobcard_part WHERE sjc_id = new.sjc_id),
+                             parts_vat_cents = (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                                                  FROM servicejobcard_part WHERE sjc_id = new.sjc_id)
+                       WHERE sjc_id = new.sjc_id;
+                      UPDATE servicejobcard_totals
+                         SET parts_net_cents = (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents) AS INTEGER)), 0)
+                                                  FROM servicejobcard_part WHERE sjc_id = old.sjc_id),
+                             parts_vat_cents = (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                                                  FROM servicejobcard_part WHERE sjc_id = old.sjc_id)
+                       WHERE sjc_id = old.sjc_id AND old.sjc_id IS NOT new.sjc_id; -- áthelyezett sor
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_part_totals_ad AFTER DELETE ON servicejobcard_part BEGIN
+                      UPDATE servicejobcard_totals
+                         SET parts_net_cents = (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents) AS INTEGER)), 0)
+                                                  FROM servicejobcard_part WHERE sjc_id = old.sjc_id),
+                             parts_vat_cents = (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                                                  FROM servicejobcard_part WHERE sjc_id = old.sjc_id)
+                       WHERE sjc_id = old.sjc_id;
+                    END
+                    """,
+
+                // --- NÉZET: ugyanazok az oszlopok, de a tárolt összegekből ---
+                "DROP VIEW IF EXISTS view_sjc_totals",
+                """
+                    CREATE VIEW view_sjc_totals AS
+                    SELECT sjc_id,
+                           work_net_cents + parts_net_cents AS subtotal_net_cents,
+                           work_vat_cents + parts_vat_cents AS vat_cents,
+                           work_net_cents + parts_net_cents + work_vat_cents + parts_vat_cents AS total_gross_cents,
+                           advance_cents,
+                           work_net_cents + parts_net_cents + work_vat_cents + parts_vat_cents
+                             - IFNULL(advance_cents, 0) AS amount_due_cents
+                      FROM servicejobcard_totals
+                    """
+        );
+    }
+
+    /**
+     * V6: Évenkénti munkalapszám-számláló.
+     *
+     * A következő szám eddig a legnagyobb meglévő jobcard_no LIKE + ORDER BY
+     * lekérdezéséből jött, már az űrlap megnyitásakor, így két egyszerre nyitott
+     * űrlap ugyanazt a számot kapta. A jobcard_sequence soronként (évenként) az
+     * utoljára kiosztott sorszámot tárolja; a szám a beszúráskor, atomikusan
+     * (egy UPSERT ... RETURNING) kerül kiosztásra. A trigger a kézzel megadott
+     * (ÉÉÉÉ-NNNNNN alakú) számokat is követi, hogy a számláló ne osszon ki már foglaltat.
+     */
+    private static Migration v6JobCardSequence() {
+        return Migration.sql(6, "Munkalapszám számláló (jobcard_sequence)",
+                """
+                    CREATE TABLE jobcard_sequence (
+                      year INTEGER PRIMARY KEY,
+                      last_no INTEGER NOT NULL
+                    )
+                    """,
+                """
+                    INSERT INTO jobcard_sequence(year, last_no)
+                    SELECT CAST(substr(jobcard_no, 1, 4) AS INTEGER),
+                           MAX(CAST(substr(jobcard_no, 6) AS INTEGER))
+                      FROM servicejobcard
+                     WHERE jobcard_no GLOB '[0-9][0-9][0-9][0-9]-[0-9]*'
+                     GROUP BY 1
+                    """,
+                """
+                    CREATE TRIGGER trg_sjc_sequence_ai AFTER INSERT ON servicejobcard
+                    WHEN new.jobcard_no GLOB '[0-9][0-9][0-9][0-9]-[0-9]*'
+                    BEGIN
+                      INSERT INTO jobcard_sequence(year, last_no)
+                      VALUES (CAST(substr(new.jobcard_no, 1, 4) AS INTEGER), CAST(substr(new.jobcard_no, 6) AS INTEGER))
+                      ON CONFLICT(year) DO UPDATE SET last_no = max(last_no, excluded.last_no);
+                    END
+                    """,
+                """
+                    CREATE TRIGGER trg_sjc_sequence_au AFTER UPDATE OF jobcard_no ON servicejobcard
+                    WHEN new.jobcard_no GLOB '[0-9][0-9][0-9][0-9]-[0-9]*'
+                    BEGIN
+                      INSERT INTO jobcard_sequence(year, last_no)
+                      VALUES (CAST(substr(new.jobcard_no, 1, 4) AS INTEGER), CAST(substr(new.jobcard_no, 6) AS INTEGER))
+                      ON CONFLICT(year) DO UPDATE SET last_no = max(last_no, excluded.last_no);
+                    END
+                    """
+        );
+    }
+
+    /**
+     * Feltölti az alapértelmezett "admin" felhasználót, ha még nem létezik.
+     */
+    private static void seedAdmin(Connection c) throws SQLException {
+        // --- ADMIN FELHASZNÁLÓ FELTÖLTÉSE (SEED) ---
+
+        final String seedSql = """
+            INSERT INTO users(username, password_hash, full_name, role_name, must_change_password)
+            SELECT ?, ?, ?, ?, ?
+            WHERE NOT EXISTS(SELECT 1 FROM users WHERE username = 'admin');
+            """;
+
+        try (PreparedStatement ps = c.prepareStatement(seedSql)) {
+            // "admin" jelszó hash-elése
+            String adminHash = PasswordHasher.hash("admin");
+
+            ps.setString(1, "admin");
+            ps.setString(2, adminHash);
+            ps.setString(3, "Rendszergazda");
+            ps.setString(4, "ADMIN");
+            ps.setInt(5, 1); // must_change_password = true
+
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package hu.carenda.app.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A számozott séma-migrációk futtatója.
+ *
+ * A lefuttatott lépéseket a schema_version tábla tartja nyilván
+ * (verzió, leírás, ellenőrzőösszeg, időpont). Induláskor:
+ * <ol>
+ *   <li>ellenőrzi, hogy a már lefutott lépések ellenőrzőösszege nem változott-e,</li>
+ *   <li>a hiányzó lépéseket sorban, mindegyiket SAJÁT tranzakcióban lefuttatja.</li>
+ * </ol>
+ * Egy sikertelen lépés visszavonódik, és a futtatás megáll (a korábbi lépések megmaradnak).
+ */
+final class Migrator {
+
+    private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final List<Migration> migrations;
+
+    /**
+     * @param migrations A lépések, növekvő verziószám szerint.
+     */
+    Migrator(List<Migration> migrations) {
+        for (int i = 0; i < migrations.size(); i++) {
+            if (migrations.get(i).version() != i + 1) {
+                throw new IllegalStateException("A migrációs lépések számozása hibás (várt: V"
+                        + (i + 1) + ", kapott: V" + migrations.get(i).version() + ")");
+            }
+        }
+        this.migrations = migrations;
+    }
+
+    /**
+     * Az adatbázist a legfrissebb sémaverzióra hozza.
+     *
+     * @param c Az író kapcsolat (auto-commit módban).
+     * @return A lefuttatott új lépések száma.
+     * @throws SQLException ha a nyilvántartás olvasása vagy egy lépés futtatása sikertelen.
+     * @throws IllegalStateException ha egy már lefutott lépés ellenőrzőösszege eltér.
+     */
+    int migrate(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                  version INTEGER PRIMARY KEY,
+                  description TEXT NOT NULL,
+                  checksum TEXT NOT NULL,
+                  applied_at TEXT NOT NULL
+                )
+                """);
+        }
+
+        Map<Integer, String> applied = appliedChecksums(c);
+
+        // 1. Ellenőrzés: a már lefutott lépések nem változhattak meg
+        for (Migration m : migrations) {
+            String stored = applied.get(m.version());
+            if (stored != null && !stored.equals(m.checksum())) {
+                throw new IllegalStateException("Migrációs ellenőrzőösszeg eltérés: V" + m.version()
+                        + " (" + m.description() + "). A lefutott lépéseket nem szabad módosítani.");
+            }
+        }
+        int known = migrations.size();
+        applied.keySet().stream().filter(v -> v > known).findAny().ifPresent(v ->
+                System.err.println("[DB] Figyelem: az adatbázis újabb sémaverziót tartalmaz (V" + v
+                        + "), mint amit ez a programverzió ismer (V" + known + ")."));
+
+        // 2. A hiányzó lépések futtatása, egyenként saját tranzakcióban
+        int count = 0;
+        for (Migration m : migrations) {
+            if (!applied.containsKey(m.version())) {
+                apply(c, m);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Map<Integer, String> appliedChecksums(Connection c) throws SQLException {
+        Map<Integer, String> out = new HashMap<>();
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                out.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return out;
+    }
+
+    private void apply(Connection c, Migration m) throws SQLException {
+        System.out.println("[DB] Migráció: V" + m.version() + " - " + m.description());
+        c.setAutoCommit(false);
+        try {
+            try (Statement st = c.createStatement()) {
+                for (String sql : m.statements()) {
+                    st.executeUpdate(sql);
+                }
+            }
+            if (m.step() != null) {
+                m.step().apply(c);
+            }
+            try (PreparedStatement ps = c.prepareStatement("""
+                    INSERT INTO schema_version(version, description, checksum, applied_at)
+                    VALUES (?,?,?,?)
+                    """)) {
+                ps.setInt(1, m.version());
+                ps.setString(2, m.description());
+                ps.setString(3, m.checksum());
+                ps.setString(4, LocalDateTime.now().format(TS_FMT));
+                ps.executeUpdate();
+            }
+            c.commit();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                c.rollback(); // Hiba esetén a teljes lépést visszavonjuk
+                System.err.println("[DB] MIGRÁCIÓ SIKERTELEN (V" + m.version() + ")! Visszavonás...");
+            } catch (Exception ignored) {}
+            throw e;
+        } finally {
+            try {
+                c.setAutoCommit(true); // Mindig visszaállítjuk az auto-commit módot
+            } catch (Exception ignored) {}
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package hu.carenda.app.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Egy fizikai kapcsolathoz tartozó, SQL szöveg szerint kulcsolt
+ * PreparedStatement gyorsítótár, LRU kiürítéssel.
+ *
+ * A DAO-k változatlanul prepareStatement()-et hívnak és lezárják az
+ * utasítást; a kapott proxy close() hívása azonban csak alaphelyzetbe állítja
+ * (paraméterek, félbemaradt batch, figyelmeztetések), és az előfordított
+ * utasítás a gyorsítótárban marad.
+ *
+ * Nem szálbiztos: egy fizikai kapcsolatot egyszerre csak egy szál használ
+ * (a ConnectionPool ezt garantálja). A számlálók viszont megosztottak.
+ */
+final class StatementCache {
+
+    /** Az összes gyorsítótár közös (pool szintű) számlálói. */
+    static final class Counters {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+    }
+
+    /** Gyorsítótár kulcs: az SQL szöveg és a generált kulcsok kérése (-1 = sima prepare). */
+    private record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    /** Egy gyorsítótárazott utasítás és az állapota. */
+    private static final class Entry {
+        final PreparedStatement stmt;
+        boolean inUse;
+        /** Már nincs a gyorsítótárban (kiürítve, vagy eleve nem oda került): visszaadáskor lezárjuk. */
+        boolean evicted;
+
+        Entry(PreparedStatement stmt) {
+            this.stmt = stmt;
+        }
+    }
+
+    private final Connection physical;
+    private final Counters counters;
+    private final LinkedHashMap<Key, Entry> entries;
+
+    /**
+     * @param physical A fizikai kapcsolat, amelyen az utasítások készülnek.
+     * @param capacity A gyorsítótárban tartott utasítások maximális száma.
+     * @param counters A pool szintű találat/tévesztés számlálók.
+     */
+    StatementCache(Connection physical, int capacity, Counters counters) {
+        this.physical = physical;
+        this.counters = counters;
+        // accessOrder=true: a legrégebben HASZNÁLT elem kerül ki először (LRU)
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > capacity) {
+                    evict(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Visszaad egy (lehetőleg gyorsítótárazott) PreparedStatement-et.
+     *
+     * @param sql               Az SQL szöveg.
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS / NO_GENERATED_KEYS, vagy -1.
+     * @param owner             A logikai (pool-ozott) kapcsolat, ezt adja vissza a getConnection().
+     * @return Egy proxy, amelynek close() hívása visszarakja az utasítást a gyorsítótárba.
+     * @throws SQLException ha az utasítás előkészítése sikertelen.
+     */
+    PreparedStatement prepare(String sql, int autoGeneratedKeys, Connection owner) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        Entry e = entries.get(key);
+
+        if (e != null && !e.inUse) {
+            counters.hits.incrementAndGet();
+            e.inUse = true;
+            return wrap(e, owner);
+        }
+
+        counters.misses.incrementAndGet();
+        if (e != null) {
+            // Ugyanaz az SQL egymásba ágyazva fut: a második példány nem kerül gyorsítótárba,
+            // a close() valóban lezárja (de a getConnection() ekkor is a pool-ozott kapcsolat)
+            Entry uncached = new Entry(create(sql, autoGeneratedKeys));
+            uncached.inUse = true;
+            uncached.evicted = true;
+            return wrap(uncached, owner);
+        }
+
+        e = new Entry(create(sql, autoGeneratedKeys));
+        e.inUse = true;
+        entries.put(key, e);
+        return wrap(e, owner);
+    }
+
+    private PreparedStatement create(String sql, int autoGeneratedKeys) throws SQLException {
+        return autoGeneratedKeys < 0
+                ? physical.prepareStatement(sql)
+                : physical.prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    /**
+     * A proxy close()-a hívja: alaphelyzetbe állítja az utasítást újrahasznosításhoz.
+     * Egy hiba miatt végre nem hajtott batch sem maradhat rajta, különben a következő
+     * használó executeBatch()-e azt is lefuttatná.
+     */
+    private void release(Entry e) {
+        e.inUse = false;
+        if (e.evicted) {
+            closeQuietly(e.stmt);
+            return;
+        }
+        try {
+            e.stmt.clearParameters();
+            e.stmt.clearBatch();
+            e.stmt.clearWarnings();
+        } catch (SQLException ex) {
+            // Használhatatlan utasítást nem tartunk meg
+            entries.values().remove(e);
+            closeQuietly(e.stmt);
+        }
+    }
+
+    private void evict(Entry e) {
+        counters.evictions.incrementAndGet();
+        e.evicted = true;
+        if (!e.inUse) {
+            closeQuietly(e.stmt);
+        }
+    }
+
+    /**
+     * Lezárja az összes gyorsítótárazott utasítást (a fizikai kapcsolat eldobása előtt).
+     */
+    void closeAll() {
+        List<Entry> all = new ArrayList<>(entries.values());
+        entries.clear();
+        for (Entry e : all) {
+            closeQuietly(e.stmt);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+            // Lezáráskor már nincs mit tenni
+        }
+    }
+
+    // --- Proxy ---
+
+    private PreparedStatement wrap(Entry e, Connection owner) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new CachedStatementHandler(e, owner));
+    }
+
+    /**
+     * A kiadott utasítás proxy-ja: a close() nem zár, hanem visszaad;
+     * a getConnection() a pool-ozott kapcsolatot adja vissza.
+     */
+    private final class CachedStatementHandler implements InvocationHandler {
+
+        private final Entry entry;
+        private final Connection owner;
+        private boolean logicallyClosed = false;
+
+        CachedStatementHandler(Entry entry, Connection owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!logicallyClosed) {
+                        logicallyClosed = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return logicallyClosed || entry.stmt.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + entry.stmt;
+                default:
+                    break;
+            }
+
+            if (logicallyClosed) {
+                throw new SQLException("Az utasítás már le van zárva.");
+            }
+            try {
+                return method.invoke(entry.stmt, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
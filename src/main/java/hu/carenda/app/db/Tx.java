@@ -0,0 +1,215 @@
+package hu.carenda.app.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tranzakciós hatókör (unit of work), amelyhez több DAO hívás is csatlakozhat.
+ *
+ * A {@link #run(Work)} / {@link #call(Call)} az író kapcsolaton nyit egy tranzakciót,
+ * és a hatókör végéig az aktuális szálhoz köti. Ezalatt a {@link Database#write()} és
+ * a {@link Database#read()} is ezt a kapcsolatot adja vissza, így a DAO-k változtatás
+ * nélkül ugyanabban a tranzakcióban dolgoznak (és látják egymás még nem commitolt
+ * írásait). A több táblát érintő mentés így egyetlen commit (egy fsync), hiba
+ * esetén pedig minden visszagörgetődik.
+ *
+ * A csatlakozó DAO-k kapcsolatán a close(), commit() és setAutoCommit() hatástalan
+ * (a hatókör kezeli), a rollback() pedig visszagörgetésre jelöli a tranzakciót.
+ * Egymásba ágyazott hatókör a külsőhöz csatlakozik.
+ *
+ * Példa:
+ * <pre>{@code
+ * Tx.run(c -> {
+ *     int customerId = customerDao.insert(...);
+ *     vehicleDao.insert(..., customerId);
+ * });
+ * }</pre>
+ */
+public final class Tx {
+
+    /**
+     * A tranzakcióban futó munka.
+     */
+    @FunctionalInterface
+    public interface Work {
+        void run(Connection c) throws SQLException;
+    }
+
+    /**
+     * A tranzakcióban futó, eredményt adó munka.
+     *
+     * @param <T> Az eredmény típusa.
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call(Connection c) throws SQLException;
+    }
+
+    /** Egy futó tranzakció állapota. */
+    private static final class Scope {
+        /** A pool-ozott író kapcsolat (ezt adjuk vissza a végén). */
+        final Connection conn;
+        /** A résztvevőknek kiadott, le nem zárható nézet. */
+        final Connection joined;
+        /** Sikeres commit után futtatandó teendők (pl. változásjelzés). */
+        final List<Runnable> afterCommit = new ArrayList<>();
+        boolean rollbackOnly = false;
+        /** A commit megtörtént: az ezután ütemezett teendők azonnal futnak. */
+        boolean committed = false;
+
+        Scope(Connection conn) {
+            this.conn = conn;
+            this.joined = joinedView(conn, this);
+        }
+    }
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private Tx() {
+    }
+
+    /**
+     * Lefuttatja a munkát egy tranzakcióban (vagy a már futóhoz csatlakozik).
+     *
+     * @param work A munka; a kapott kapcsolatot nem kell lezárni.
+     * @throws SQLException ha a munka vagy a commit SQL hibát dob (ekkor visszagörget).
+     */
+    public static void run(Work work) throws SQLException {
+        call(c -> {
+            work.run(c);
+            return null;
+        });
+    }
+
+    /**
+     * Mint a {@link #run(Work)}, de a munka eredményét adja vissza.
+     * A RuntimeException-ök (pl. üzleti hibák) változatlanul továbbmennek, a
+     * tranzakció ekkor is visszagörgetődik. Egymásba ágyazott hívásnál a belső hiba
+     * a külső tranzakciót is visszagörgetésre jelöli, akkor is, ha a külső hívó elkapja.
+     *
+     * @param work A munka.
+     * @param <T>  Az eredmény típusa.
+     * @return A munka eredménye.
+     * @throws SQLException ha a munka vagy a commit SQL hibát dob.
+     */
+    public static <T> T call(Call<T> work) throws SQLException {
+        Scope outer = CURRENT.get();
+        if (outer != null) {
+            try {
+                return work.call(outer.joined);
+            } catch (Throwable e) {
+                // A külső hívó elkaphatja a hibát: a félbemaradt írások akkor se kerüljenek commitba
+                outer.rollbackOnly = true;
+                throw e;
+            }
+        }
+
+        Scope scope = new Scope(Database.write());
+        CURRENT.set(scope);
+        try {
+            scope.conn.setAutoCommit(false);
+            T result;
+            Throwable failure = null;
+            try {
+                result = work.call(scope.joined);
+                if (scope.rollbackOnly) {
+                    throw new SQLException("A tranzakciót egy résztvevő visszagörgetésre jelölte.");
+                }
+                scope.conn.commit();
+            } catch (Throwable e) {
+                failure = e;
+                try {
+                    scope.conn.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError); // az eredeti hiba a fontosabb
+                }
+                throw e;
+            } finally {
+                try {
+                    scope.conn.setAutoCommit(true);
+                } catch (SQLException autoCommitError) {
+                    if (failure == null) {
+                        throw autoCommitError;
+                    }
+                    failure.addSuppressed(autoCommitError);
+                }
+            }
+            // A commit után, a szál felszabadítása előtt: a változásjelzés csak a látható adatokra vonatkozzon
+            scope.committed = true;
+            for (Runnable r : scope.afterCommit) {
+                r.run();
+            }
+            return result;
+        } finally {
+            CURRENT.remove();
+            scope.conn.close(); // vissza a készletbe
+        }
+    }
+
+    /**
+     * @return true, ha az aktuális szálon tranzakciós hatókör fut.
+     */
+    public static boolean active() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Sikeres commit utánra ütemez egy teendőt; tranzakción kívül (vagy egy másik
+     * commit utáni teendőből hívva) azonnal lefuttatja. Visszagörgetéskor a teendő elmarad.
+     *
+     * @param action A teendő.
+     */
+    public static void afterCommit(Runnable action) {
+        Scope scope = CURRENT.get();
+        if (scope != null && !scope.committed) {
+            scope.afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * A Database hívja: ha az aktuális szálon tranzakció fut, annak kapcsolata, egyébként null.
+     */
+    static Connection joined() {
+        Scope scope = CURRENT.get();
+        return scope != null ? scope.joined : null;
+    }
+
+    /**
+     * A tranzakció kapcsolatának a résztvevőknek kiadott nézete: a tranzakció
+     * határait (close, commit, autocommit) a hatókör kezeli, nem a DAO.
+     */
+    private static Connection joinedView(Connection conn, Scope scope) {
+        return (Connection) Proxy.newProxyInstance(
+                Tx.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close", "commit", "setAutoCommit":
+                            return null;
+                        case "rollback":
+                            if (args == null) { // rollback(Savepoint) mehet tovább
+                                scope.rollbackOnly = true;
+                                return null;
+                            }
+                            break;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException ite) {
+                        throw ite.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,51 @@
+package hu.carenda.app.events;
+
+import hu.carenda.app.repository.ChangeTracker;
+import hu.carenda.app.repository.ChangeTracker.Stamp;
+
+/**
+ * Egy sikeresen commitolt adatváltozás, amelyről a DAO-k az {@link EventBus}-on értesítenek.
+ *
+ * Az események csak az érintett sor ID-ját hordozzák; aki érdeklődik, a friss
+ * adatot maga kérdezi le (így az esemény sosem elavult pillanatkép).
+ * A "Changed" új sort és módosítást egyaránt jelent.
+ *
+ * A {@link #stamp()} a {@link ChangeTracker} számlálói közvetlenül a változás előtt és
+ * után: egy nézet, amely a "before" verziót mutatta és a változást átvezette, pontosan
+ * az "after" verziót nyugtázhatja.
+ */
+public sealed interface DomainEvent {
+
+    /**
+     * @return Az érintett sor ID-ja.
+     */
+    int id();
+
+    /**
+     * @return A változásszámlálók a változás előtt és után.
+     */
+    Stamp stamp();
+
+    record CustomerChanged(int id, Stamp stamp) implements DomainEvent {
+    }
+
+    /** Az ügyfél járműveinek, időpontjainak és munkalapjainak customer_id-ja ekkor NULL-ra vált. */
+    record CustomerDeleted(int id, Stamp stamp) implements DomainEvent {
+    }
+
+    record VehicleChanged(int id, Stamp stamp) implements DomainEvent {
+    }
+
+    /** A jármű időpontjainak és munkalapjainak vehicle_id-ja ekkor NULL-ra vált. */
+    record VehicleDeleted(int id, Stamp stamp) implements DomainEvent {
+    }
+
+    record AppointmentChanged(int id, Stamp stamp) implements DomainEvent {
+    }
+
+    record AppointmentDeleted(int id, Stamp stamp) implements DomainEvent {
+    }
+
+    record JobCardChanged(int id, Stamp stamp) implements DomainEvent {
+    }
+}
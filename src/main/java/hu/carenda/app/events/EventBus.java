@@ -0,0 +1,99 @@
+package hu.carenda.app.events;
+
+import hu.carenda.app.db.Tx;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Alkalmazásszintű, típusos eseménybusz a {@link DomainEvent}-ekhez.
+ *
+ * A DAO-k írás után publikálnak; tranzakción ({@link Tx}) belül a kézbesítés a commit
+ * utánra halasztódik (visszagörgetéskor elmarad). Az író kapcsolat egyetlen, így az
+ * események a commitok sorrendjében érkeznek.
+ *
+ * Feliratkozáskor megadható, melyik szálon fusson a kezelő (pl. a felület
+ * {@code Platform::runLater}-t ad meg); alapból a publikáló szálon fut.
+ * Egy kezelő hibája nem akadályozza a többit, és a publikálót sem.
+ *
+ * Szálbiztos.
+ */
+public final class EventBus {
+
+    /**
+     * Egy feliratkozás; a close() leiratkoztat.
+     */
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /** Egy feliratkozott kezelő (identitás szerint azonosítva a leiratkozáshoz). */
+    private static final class Handler<E extends DomainEvent> {
+        private final Class<E> type;
+        private final Executor executor;
+        private final Consumer<? super E> action;
+
+        Handler(Class<E> type, Executor executor, Consumer<? super E> action) {
+            this.type = type;
+            this.executor = executor;
+            this.action = action;
+        }
+
+        void deliver(DomainEvent event) {
+            if (!type.isInstance(event)) {
+                return;
+            }
+            E e = type.cast(event);
+            executor.execute(() -> {
+                try {
+                    action.accept(e);
+                } catch (RuntimeException ex) {
+                    System.err.println("[EVENT] Kezelő hiba (" + event + "): " + ex);
+                    ex.printStackTrace();
+                }
+            });
+        }
+    }
+
+    private static final CopyOnWriteArrayList<Handler<?>> HANDLERS = new CopyOnWriteArrayList<>();
+
+    private EventBus() {
+    }
+
+    /**
+     * Feliratkozás egy eseménytípusra (vagy a {@code DomainEvent.class}-szal az összesre).
+     *
+     * @param type     Az eseménytípus.
+     * @param executor A kezelő futtatója (pl. {@code Platform::runLater}).
+     * @param handler  A kezelő.
+     * @param <E>      Az esemény típusa.
+     * @return A feliratkozás (leiratkozáshoz).
+     */
+    public static <E extends DomainEvent> Subscription subscribe(Class<E> type, Executor executor, Consumer<? super E> handler) {
+        Handler<E> h = new Handler<>(type, executor, handler);
+        HANDLERS.add(h);
+        return () -> HANDLERS.remove(h);
+    }
+
+    /**
+     * Feliratkozás; a kezelő a publikáló szálon fut.
+     */
+    public static <E extends DomainEvent> Subscription subscribe(Class<E> type, Consumer<? super E> handler) {
+        return subscribe(type, Runnable::run, handler);
+    }
+
+    /**
+     * Esemény publikálása; tranzakcióban a sikeres commit után kézbesül.
+     *
+     * @param event Az esemény.
+     */
+    public static void publish(DomainEvent event) {
+        Tx.afterCommit(() -> {
+            for (Handler<?> h : HANDLERS) {
+                h.deliver(event);
+            }
+        });
+    }
+}
@@ -5,8 +5,16 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
 public class Appointment {
 
+    /** A start_ts mező egységes tárolási formátuma. */
+    public static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
     private final ObjectProperty<Integer> id = new SimpleObjectProperty<>(null);
     private final ObjectProperty<Integer> customerId = new SimpleObjectProperty<>(null);
     private final ObjectProperty<Integer> vehicleId = new SimpleObjectProperty<>(null);
@@ -16,6 +24,9 @@ public class Appointment {
     private final ObjectProperty<Integer> durationMinutes = new SimpleObjectProperty<>(null);
     private final StringProperty note = new SimpleStringProperty();
     private final StringProperty status = new SimpleStringProperty();
+    /** Kezdés / befejezés percben (1970-01-01 00:00 óta, helyi "falióra" idő, zóna nélkül). */
+    private final ObjectProperty<Integer> startEpochMin = new SimpleObjectProperty<>(null);
+    private final ObjectProperty<Integer> endEpochMin = new SimpleObjectProperty<>(null);
 
     // --- Getterek, Setterek, Property-k ---
 
@@ -54,4 +65,62 @@ public class Appointment {
     public String getStatus() { return status.get(); }
     public void setStatus(String v) { status.set(v); }
     public StringProperty statusProperty() { return status; }
+
+    public Integer getStartEpochMin() { return startEpochMin.get(); }
+    public void setStartEpochMin(Integer v) { startEpochMin.set(v); }
+    public ObjectProperty<Integer> startEpochMinProperty() { return startEpochMin; }
+
+    public Integer getEndEpochMin() { return endEpochMin.get(); }
+    public void setEndEpochMin(Integer v) { endEpochMin.set(v); }
+    public ObjectProperty<Integer> endEpochMinProperty() { return endEpochMin; }
+
+    // --- Időpont segédfüggvények ---
+
+    /**
+     * A kezdés időpontja. Ha az epoch perc ismert (DB-ből betöltött sor),
+     * abból számolja (parse nélkül); egyébként a start_ts szövegből.
+     *
+     * @return A kezdés, vagy null, ha nem értelmezhető.
+     */
+    public LocalDateTime getStartDateTime() {
+        Integer m = getStartEpochMin();
+        return (m != null) ? fromEpochMinutes(m) : parseStartTs(getStartTs());
+    }
+
+    /**
+     * Egy start_ts szöveg értelmezése ("yyyy-MM-dd'T'HH:mm", vagy teljes ISO formátum).
+     *
+     * @param ts A szöveg.
+     * @return Az időpont, vagy null, ha üres vagy hibás.
+     */
+    public static LocalDateTime parseStartTs(String ts) {
+        if (ts == null || ts.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(ts, TS_FMT);
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(ts); // pl. másodpercekkel együtt
+            } catch (DateTimeParseException e2) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Helyi időpont átalakítása egész percekre (1970-01-01 00:00 óta).
+     * Zóna nélkül (UTC eltolással) számol, így megegyezik az SQLite
+     * strftime('%s', start_ts) / 60 értékével.
+     */
+    public static int toEpochMinutes(LocalDateTime t) {
+        return (int) Math.floorDiv(t.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * A {@link #toEpochMinutes(LocalDateTime)} inverze.
+     */
+    public static LocalDateTime fromEpochMinutes(int minutes) {
+        return LocalDateTime.ofEpochSecond(minutes * 60L, 0, ZoneOffset.UTC);
+    }
 }
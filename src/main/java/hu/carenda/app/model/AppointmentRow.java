@@ -0,0 +1,31 @@
+package hu.carenda.app.model;
+
+/**
+ * Időpont a listanézetekhez (ügyfélnévvel és rendszámmal JOIN-olva): könnyű,
+ * megváltoztathatatlan sor, JavaFX property-k nélkül. Szerkesztéshez a
+ * {@link #toAppointment()} készít belőle teljes (property alapú) modellt.
+ */
+public record AppointmentRow(Integer id, Integer customerId, Integer vehicleId, String startTs,
+                             Integer durationMinutes, String note, String status,
+                             Integer startEpochMin, Integer endEpochMin,
+                             String ownerName, String vehiclePlate) {
+
+    /**
+     * @return Szerkeszthető Appointment modell ugyanezekkel az adatokkal.
+     */
+    public Appointment toAppointment() {
+        Appointment a = new Appointment();
+        a.setId(id);
+        a.setCustomerId(customerId);
+        a.setVehicleId(vehicleId);
+        a.setStartTs(startTs);
+        a.setDurationMinutes(durationMinutes);
+        a.setNote(note);
+        a.setStatus(status);
+        a.setStartEpochMin(startEpochMin);
+        a.setEndEpochMin(endEpochMin);
+        a.setOwnerName(ownerName);
+        a.setVehiclePlate(vehiclePlate);
+        return a;
+    }
+}
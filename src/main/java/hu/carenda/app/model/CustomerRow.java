@@ -0,0 +1,15 @@
+package hu.carenda.app.model;
+
+/**
+ * Ügyfél a listanézetekhez: könnyű, megváltoztathatatlan sor, JavaFX property-k nélkül.
+ * Szerkesztéshez a {@link #toCustomer()} készít belőle teljes (property alapú) modellt.
+ */
+public record CustomerRow(Integer id, String name, String phone, String email) {
+
+    /**
+     * @return Szerkeszthető Customer modell ugyanezekkel az adatokkal.
+     */
+    public Customer toCustomer() {
+        return new Customer(id, name, phone, email);
+    }
+}
@@ -0,0 +1,12 @@
+package hu.carenda.app.model;
+
+/**
+ * Munkalap a listanézetekhez: csak a táblázatban megjelenő (és a lapozáshoz szükséges)
+ * oszlopok, JavaFX property-k nélkül. A hosszú szöveges mezőket (hibaleírás, diagnózis, ...)
+ * nem tartalmazza; szerkesztéshez a teljes munkalapot ID alapján kell betölteni
+ * (ServiceJobCardDao.findById).
+ */
+public record JobCardRow(Integer id, String jobcardNo, Integer customerId, Integer vehicleId,
+                         String status, String createdAt,
+                         String ownerName, String plate, String brand, String model) {
+}
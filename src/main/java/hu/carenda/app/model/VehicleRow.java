@@ -0,0 +1,17 @@
+package hu.carenda.app.model;
+
+/**
+ * Jármű a listanézetekhez (a tulajdonos nevével JOIN-olva): könnyű, megváltoztathatatlan
+ * sor, JavaFX property-k nélkül. Szerkesztéshez a {@link #toVehicle()} készít belőle
+ * teljes (property alapú) modellt.
+ */
+public record VehicleRow(Integer id, String plate, String vin, String engineNo, String brand, String model,
+                         Integer year, String fuelType, Integer ownerId, String ownerName) {
+
+    /**
+     * @return Szerkeszthető Vehicle modell ugyanezekkel az adatokkal.
+     */
+    public Vehicle toVehicle() {
+        return new Vehicle(id, plate, vin, engineNo, brand, model, year, fuelType, ownerId, ownerName);
+    }
+}
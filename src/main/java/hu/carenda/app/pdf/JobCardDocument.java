@@ -0,0 +1,128 @@
+package hu.carenda.app.pdf;
+
+import hu.carenda.app.model.Customer;
+import hu.carenda.app.model.ServiceJobCard;
+import hu.carenda.app.model.ServiceJobCardPart;
+import hu.carenda.app.model.ServiceJobCardWorkDesc;
+import hu.carenda.app.model.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Egy munkalap PDF-hez szükséges adatainak változtathatatlan pillanatképe.
+ *
+ * Csak egyszerű értékeket tartalmaz (nincs benne JavaFX property vagy UI elem),
+ * így bármelyik szálon renderelhető, a felülettől függetlenül.
+ * Az összegek fillérben vannak, soronként kerekítve, ugyanúgy, mint a
+ * servicejobcard_totals táblában.
+ *
+ * @param jobcardNo     Munkalapszám.
+ * @param status        Állapot.
+ * @param createdAt     Felvétel ideje (ahogy tárolva van).
+ * @param customerName  Ügyfél neve.
+ * @param customerPhone Ügyfél telefonszáma.
+ * @param customerEmail Ügyfél e-mail címe.
+ * @param plate         Rendszám.
+ * @param brand         Gyártmány.
+ * @param model         Típus.
+ * @param year          Évjárat (lehet null).
+ * @param odometerKm    Km óra állás (lehet null).
+ * @param faultDesc     Hiba leírása.
+ * @param work          Munkadíj tételek.
+ * @param parts         Alkatrész tételek.
+ * @param netCents      Nettó részösszeg.
+ * @param vatCents      ÁFA összege.
+ * @param advanceCents  Előleg (lehet null).
+ */
+public record JobCardDocument(String jobcardNo, String status, String createdAt,
+                              String customerName, String customerPhone, String customerEmail,
+                              String plate, String brand, String model, Integer year, Integer odometerKm,
+                              String faultDesc,
+                              List<WorkLine> work, List<PartLine> parts,
+                              long netCents, long vatCents, Integer advanceCents) {
+
+    /**
+     * Egy munkadíj sor.
+     */
+    public record WorkLine(String name, double hours, int rateCents, int vatPercent) {
+        public long netCents() {
+            return Math.round(hours * rateCents);
+        }
+
+        public long vatCents() {
+            return Math.round(hours * rateCents * vatPercent / 100.0);
+        }
+    }
+
+    /**
+     * Egy alkatrész sor.
+     */
+    public record PartLine(String sku, String name, double quantity, int unitPriceCents, int vatPercent) {
+        public long netCents() {
+            return Math.round(quantity * unitPriceCents);
+        }
+
+        public long vatCents() {
+            return Math.round(quantity * unitPriceCents * vatPercent / 100.0);
+        }
+    }
+
+    public JobCardDocument {
+        work = List.copyOf(work);
+        parts = List.copyOf(parts);
+    }
+
+    /**
+     * Pillanatkép a modell objektumokból; az összegeket a tételekből számolja.
+     * Csak azon a szálon hívható, amelyik a modelleket módosítja (pl. JavaFX szál).
+     *
+     * @param card     A munkalap.
+     * @param customer Az ügyfél (lehet null).
+     * @param vehicle  A jármű (lehet null).
+     * @param work     A munkadíj tételek.
+     * @param parts    Az alkatrész tételek.
+     * @return A pillanatkép.
+     */
+    public static JobCardDocument of(ServiceJobCard card, Customer customer, Vehicle vehicle,
+                                     List<ServiceJobCardWorkDesc> work, List<ServiceJobCardPart> parts) {
+        List<WorkLine> workLines = new ArrayList<>(work.size());
+        long net = 0;
+        long vat = 0;
+        for (ServiceJobCardWorkDesc w : work) {
+            WorkLine l = new WorkLine(w.getName(), w.getHours(), w.getRate_cents(), w.getVat_percent());
+            workLines.add(l);
+            net += l.netCents();
+            vat += l.vatCents();
+        }
+        List<PartLine> partLines = new ArrayList<>(parts.size());
+        for (ServiceJobCardPart p : parts) {
+            PartLine l = new PartLine(p.getSku(), p.getName(), p.getQuantity(), p.getUnit_price_cents(), p.getVat_percent());
+            partLines.add(l);
+            net += l.netCents();
+            vat += l.vatCents();
+        }
+
+        return new JobCardDocument(
+                card.getJobcard_no(), card.getStatus(), card.getCreated_at(),
+                customer != null ? customer.getName() : null,
+                customer != null ? customer.getPhone() : null,
+                customer != null ? customer.getEmail() : null,
+                vehicle != null ? vehicle.getPlate() : null,
+                vehicle != null ? vehicle.getBrand() : null,
+                vehicle != null ? vehicle.getModel() : null,
+                vehicle != null ? vehicle.getYear() : null,
+                card.getOdometer_km(),
+                card.getFault_desc(),
+                workLines, partLines,
+                net, vat, card.getAdvance_cents());
+    }
+
+    public long grossCents() {
+        return netCents + vatCents;
+    }
+
+    public long amountDueCents() {
+        return grossCents() - (advanceCents != null ? advanceCents : 0);
+    }
+}
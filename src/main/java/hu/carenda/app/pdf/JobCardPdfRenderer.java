@@ -0,0 +1,309 @@
+package hu.carenda.app.pdf;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+import hu.carenda.app.model.Customer;
+import hu.carenda.app.model.ServiceJobCard;
+import hu.carenda.app.model.Vehicle;
+import hu.carenda.app.repository.CustomerDao;
+import hu.carenda.app.repository.ServiceJobCardDao;
+import hu.carenda.app.repository.ServiceJobCardPartDao;
+import hu.carenda.app.repository.ServiceJobCardWorkDescDao;
+import hu.carenda.app.repository.VehicleDao;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Munkalap PDF generálása (OpenPDF), a felülettől függetlenül.
+ *
+ * Az adatokat egy {@link JobCardDocument} pillanatképből veszi, amely a DAO-kból
+ * ({@link #load(int)}) vagy egy űrlap aktuális állapotából ({@link JobCardDocument#of})
+ * készülhet. A render*Async metódusok háttérszálon dolgoznak, és a haladást
+ * egy {@link ProgressListener}-en jelzik (a hívó szálán kívül!).
+ *
+ * Fájlba írás egy ideiglenes fájlba történik (pufferelt FileChannel), amelyet
+ * a végén átnevezünk; hiba esetén nem marad félkész PDF a célhelyen.
+ *
+ * Szálbiztos; egy példány több párhuzamos renderelésre is használható.
+ */
+public final class JobCardPdfRenderer {
+
+    /**
+     * Haladásjelzés. A renderelő szálon hívódik.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param done A kész rész (0..1).
+         * @param step Az aktuális lépés rövid leírása.
+         */
+        void onProgress(double done, String step);
+
+        /** Nem figyel semmit. */
+        ProgressListener NONE = (done, step) -> { };
+    }
+
+    /** Közös háttérszálak a PDF generáláshoz (a layout CPU-igényes, kevés szál is elég). */
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(2, new RendererThreadFactory());
+
+    /** A fájlba írás pufferének mérete. */
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    private final ServiceJobCardDao jobCardDao = new ServiceJobCardDao();
+    private final ServiceJobCardWorkDescDao workDescDao = new ServiceJobCardWorkDescDao();
+    private final ServiceJobCardPartDao partDao = new ServiceJobCardPartDao();
+    private final CustomerDao customerDao = new CustomerDao();
+    private final VehicleDao vehicleDao = new VehicleDao();
+
+    /**
+     * Egy mentett munkalap adatainak betöltése a DAO-kból.
+     *
+     * @param sjcId A munkalap ID-ja.
+     * @return A pillanatkép.
+     * @throws IllegalArgumentException ha nincs ilyen munkalap.
+     */
+    public JobCardDocument load(int sjcId) {
+        ServiceJobCard card = jobCardDao.findById(sjcId);
+        if (card == null) {
+            throw new IllegalArgumentException("Nincs ilyen munkalap: " + sjcId);
+        }
+        Customer customer = card.getCustomer_id() != null ? customerDao.findById(card.getCustomer_id()) : null;
+        Vehicle vehicle = card.getVehicle_id() != null ? vehicleDao.findById(card.getVehicle_id()) : null;
+        return JobCardDocument.of(card, customer, vehicle,
+                workDescDao.findByJobCard(sjcId), partDao.findByJobCard(sjcId));
+    }
+
+    /**
+     * Egy mentett munkalap PDF-jének elkészítése a háttérben (betöltés + renderelés).
+     *
+     * @param sjcId    A munkalap ID-ja.
+     * @param target   A célfájl.
+     * @param progress Haladásjelzés.
+     * @return A kész fájl útvonala (vagy a hiba).
+     */
+    public CompletableFuture<Path> renderAsync(int sjcId, Path target, ProgressListener progress) {
+        return CompletableFuture.supplyAsync(() -> {
+            progress.onProgress(0.0, "Adatok betöltése");
+            return renderToFile(load(sjcId), target, progress);
+        }, EXECUTOR);
+    }
+
+    /**
+     * Egy kész pillanatkép PDF-jének elkészítése a háttérben.
+     *
+     * @param doc      A munkalap adatai.
+     * @param target   A célfájl.
+     * @param progress Haladásjelzés.
+     * @return A kész fájl útvonala (vagy a hiba).
+     */
+    public CompletableFuture<Path> renderAsync(JobCardDocument doc, Path target, ProgressListener progress) {
+        return CompletableFuture.supplyAsync(() -> renderToFile(doc, target, progress), EXECUTOR);
+    }
+
+    /**
+     * Szinkron renderelés fájlba: ideiglenes fájlba ír, majd a célra nevezi át.
+     *
+     * @param doc      A munkalap adatai.
+     * @param target   A célfájl (felülíródik).
+     * @param progress Haladásjelzés.
+     * @return A célfájl.
+     */
+    public Path renderToFile(JobCardDocument doc, Path target, ProgressListener progress) {
+        Path dir = target.toAbsolutePath().getParent();
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(dir, ".carenda-", ".pdf.tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch), WRITE_BUFFER_BYTES)) {
+                render(doc, out, progress);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            progress.onProgress(1.0, "Kész");
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("PDF írása sikertelen: " + target, e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp); // sikeres átnevezés után már nincs meg
+                } catch (IOException ignored) {
+                    // Az ideiglenes fájl legfeljebb ott marad
+                }
+            }
+        }
+    }
+
+    /**
+     * Szinkron renderelés egy streambe. A streamet nem zárja le.
+     *
+     * @param doc      A munkalap adatai.
+     * @param out      A cél stream (pl. fájl vagy ZIP bejegyzés).
+     * @param progress Haladásjelzés.
+     */
+    public void render(JobCardDocument doc, OutputStream out, ProgressListener progress) {
+        Document pdf = new Document(PageSize.A4, 36, 36, 36, 36);
+        try {
+            PdfWriter writer = PdfWriter.getInstance(pdf, out);
+            writer.setCloseStream(false);
+            pdf.open();
+
+            // --- Cím ---
+            progress.onProgress(0.1, "Fejléc");
+            pdf.add(new Paragraph("Munkalap #" + nvl(doc.jobcardNo()), PdfStyles.TITLE));
+            pdf.add(new Paragraph("Állapot: " + nvl(doc.status()), PdfStyles.BODY));
+            pdf.add(new Paragraph("Felvétel ideje: " + nvl(doc.createdAt()), PdfStyles.BODY));
+            pdf.add(new Paragraph(" ")); // Térköz
+
+            // --- Ügyfél és Jármű blokk (2 oszlopos táblázat) ---
+            String custBlock = "Ügyfél:\n"
+                    + nvl(doc.customerName()) + "\n"
+                    + "Tel: " + nvl(doc.customerPhone()) + "\n"
+                    + "Email: " + nvl(doc.customerEmail()) + "\n";
+
+            String vehBlock = "Jármű:\n"
+                    + "Rendszám: " + nvl(doc.plate()) + "\n"
+                    + "Típus: " + nvl(doc.brand()) + " " + nvl(doc.model()) + "\n"
+                    + "Évjárat: " + (doc.year() != null ? doc.year() : "") + "\n"
+                    + "Km óra: " + (doc.odometerKm() != null ? doc.odometerKm() : "") + " km\n";
+
+            PdfPTable custVehTable = new PdfPTable(2);
+            custVehTable.setWidthPercentage(100);
+            custVehTable.setWidths(new float[]{1f, 1f});
+            custVehTable.addCell(PdfStyles.cell(custBlock, 6f));
+            custVehTable.addCell(PdfStyles.cell(vehBlock, 6f));
+            pdf.add(custVehTable);
+            pdf.add(new Paragraph(" "));
+
+            // --- Hiba leírása ---
+            if (doc.faultDesc() != null && !doc.faultDesc().isBlank()) {
+                pdf.add(new Paragraph("Hiba leírása:", PdfStyles.HEADING));
+                pdf.add(new Paragraph(doc.faultDesc(), PdfStyles.BODY));
+                pdf.add(new Paragraph(" "));
+            }
+
+            // --- Elvégzett munka táblázat ---
+            progress.onProgress(0.3, "Munkadíjak");
+            pdf.add(new Paragraph("Elvégzett munka", PdfStyles.HEADING));
+            PdfPTable workTable = new PdfPTable(6);
+            workTable.setWidthPercentage(100);
+            workTable.setWidths(new float[]{3f, 1f, 1f, 1f, 1f, 1f});
+
+            workTable.addCell(PdfStyles.header("Munka"));
+            workTable.addCell(PdfStyles.header("Óra"));
+            workTable.addCell(PdfStyles.header("Egységár (Ft)"));
+            workTable.addCell(PdfStyles.header("ÁFA %"));
+            workTable.addCell(PdfStyles.header("Nettó (Ft)"));
+            workTable.addCell(PdfStyles.header("Bruttó (Ft)"));
+
+            for (JobCardDocument.WorkLine w : doc.work()) {
+                workTable.addCell(PdfStyles.cell(w.name()));
+                workTable.addCell(PdfStyles.cell(String.valueOf(w.hours())));
+                workTable.addCell(PdfStyles.cell(String.valueOf(w.rateCents() / 100)));
+                workTable.addCell(PdfStyles.cell(String.valueOf(w.vatPercent())));
+                workTable.addCell(PdfStyles.cell(ft(w.netCents())));
+                workTable.addCell(PdfStyles.cell(ft(w.netCents() + w.vatCents())));
+            }
+            pdf.add(workTable);
+            pdf.add(new Paragraph(" "));
+
+            // --- Alkatrészek táblázat ---
+            progress.onProgress(0.5, "Alkatrészek");
+            pdf.add(new Paragraph("Felhasznált anyagok / alkatrészek", PdfStyles.HEADING));
+            PdfPTable partTable = new PdfPTable(7);
+            partTable.setWidthPercentage(100);
+            partTable.setWidths(new float[]{1.5f, 2f, 1f, 1f, 1f, 1f, 1f});
+
+            partTable.addCell(PdfStyles.header("Cikkszám"));
+            partTable.addCell(PdfStyles.header("Megnevezés"));
+            partTable.addCell(PdfStyles.header("Menny."));
+            partTable.addCell(PdfStyles.header("Egységár (Ft)"));
+            partTable.addCell(PdfStyles.header("ÁFA %"));
+            partTable.addCell(PdfStyles.header("Nettó (Ft)"));
+            partTable.addCell(PdfStyles.header("Bruttó (Ft)"));
+
+            for (JobCardDocument.PartLine p : doc.parts()) {
+                partTable.addCell(PdfStyles.cell(p.sku()));
+                partTable.addCell(PdfStyles.cell(p.name()));
+                partTable.addCell(PdfStyles.cell(String.valueOf(p.quantity())));
+                partTable.addCell(PdfStyles.cell(String.valueOf(p.unitPriceCents() / 100)));
+                partTable.addCell(PdfStyles.cell(String.valueOf(p.vatPercent())));
+                partTable.addCell(PdfStyles.cell(ft(p.netCents())));
+                partTable.addCell(PdfStyles.cell(ft(p.netCents() + p.vatCents())));
+            }
+            pdf.add(partTable);
+            pdf.add(new Paragraph(" "));
+
+            // --- Összesítés ---
+            progress.onProgress(0.7, "Összesítés");
+            pdf.add(new Paragraph("Összesítés", PdfStyles.HEADING));
+            PdfPTable totalsTable = new PdfPTable(2);
+            totalsTable.setWidthPercentage(60);
+            totalsTable.setHorizontalAlignment(Element.ALIGN_RIGHT);
+            totalsTable.setWidths(new float[]{3f, 1f});
+
+            long advance = doc.advanceCents() != null ? doc.advanceCents() : 0;
+            addTotalsRow(totalsTable, "Részösszeg (nettó):", ft(doc.netCents()) + " Ft", false);
+            addTotalsRow(totalsTable, "ÁFA összege:", ft(doc.vatCents()) + " Ft", false);
+            addTotalsRow(totalsTable, "Végösszeg (bruttó):", ft(doc.grossCents()) + " Ft", true);
+            addTotalsRow(totalsTable, "Előleg:", ft(advance) + " Ft", false);
+            addTotalsRow(totalsTable, "Fizetendő:", ft(doc.amountDueCents()) + " Ft", true);
+
+            pdf.add(totalsTable);
+
+            progress.onProgress(0.9, "Írás");
+        } catch (DocumentException e) {
+            throw new IllegalStateException("PDF generálása sikertelen: " + e.getMessage(), e);
+        } finally {
+            if (pdf.isOpen()) {
+                pdf.close();
+            }
+        }
+    }
+
+    // --- PDF Cella Segédek ---
+
+    private static void addTotalsRow(PdfPTable table, String label, String value, boolean emphasized) {
+        table.addCell(PdfStyles.total(label, emphasized));
+        table.addCell(PdfStyles.total(value, emphasized));
+    }
+
+    private static String nvl(String s) {
+        return (s == null) ? "" : s;
+    }
+
+    /** Fillér -> egész forint szövegként. */
+    private static String ft(long cents) {
+        return String.valueOf(Math.round(cents / 100.0));
+    }
+
+    /** Daemon szálak, hogy a háttérben futó renderelés ne tartsa életben az alkalmazást. */
+    private static final class RendererThreadFactory implements ThreadFactory {
+        private final AtomicInteger seq = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "carenda-pdf-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
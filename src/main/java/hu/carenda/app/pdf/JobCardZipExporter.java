@@ -0,0 +1,194 @@
+package hu.carenda.app.pdf;
+
+import hu.carenda.app.model.JobCardRow;
+import hu.carenda.app.pdf.JobCardPdfRenderer.ProgressListener;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Több munkalap PDF-jének exportja egyetlen ZIP fájlba (pl. havi zárás a könyvelőnek).
+ *
+ * A PDF-eket egy korlátos méretű szálkészlet rendereli párhuzamosan, a ZIP-be pedig
+ * a hívó szál írja őket, az elkészülés sorrendjében. Egyszerre legfeljebb
+ * {@code 2 × szálszám} kész (még ki nem írt) PDF van a memóriában, így a memóriaigény
+ * nem függ a munkalapok számától.
+ *
+ * A ZIP ideiglenes fájlba készül, és csak a végén kerül a helyére; hiba vagy
+ * megszakítás (interrupt) esetén a célfájl nem jön létre.
+ */
+public final class JobCardZipExporter {
+
+    /** A ZIP írás pufferének mérete. */
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    /** Legfeljebb ennyi renderelő szál (a DAO olvasó készlete is 4 kapcsolatos). */
+    private static final int MAX_THREADS = 4;
+
+    /**
+     * Az export eredménye.
+     *
+     * @param documents A ZIP-be került PDF-ek száma.
+     * @param bytes     A PDF-ek összmérete (tömörítés előtt).
+     * @param elapsed   Az export teljes ideje.
+     */
+    public record ExportResult(int documents, long bytes, Duration elapsed) {
+
+        /**
+         * @return Áteresztőképesség: dokumentum / másodperc.
+         */
+        public double documentsPerSecond() {
+            double sec = elapsed.toNanos() / 1_000_000_000.0;
+            return sec > 0 ? documents / sec : documents;
+        }
+    }
+
+    /** Egy elkészült PDF, ZIP-be írásra várva. */
+    private record Rendered(String entryName, byte[] pdf) {
+    }
+
+    private final JobCardPdfRenderer renderer = new JobCardPdfRenderer();
+    private final int threads;
+
+    public JobCardZipExporter() {
+        this(Math.min(MAX_THREADS, Math.max(1, Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * @param threads A párhuzamos renderelő szálak száma (legalább 1).
+     */
+    public JobCardZipExporter(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Legalább egy szál kell: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * A megadott munkalapok PDF-jeinek exportja egy ZIP fájlba. A hívó szálon blokkol.
+     *
+     * @param cards    Az exportálandó munkalapok.
+     * @param target   A cél ZIP fájl (felülíródik).
+     * @param progress Haladásjelzés a hívó szálon (kész / összes, és "k/n" szöveg).
+     * @return Az export eredménye (darabszám, méret, idő).
+     * @throws InterruptedException ha a hívó szálat megszakították (az export elmarad).
+     */
+    public ExportResult export(List<JobCardRow> cards, Path target, ProgressListener progress) throws InterruptedException {
+        long start = System.nanoTime();
+        int total = cards.size();
+        Path dir = target.toAbsolutePath().getParent();
+        Path tmp = null;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, daemonThreads());
+        try {
+            tmp = Files.createTempFile(dir, ".carenda-", ".zip.tmp");
+            CompletionService<Rendered> done = new ExecutorCompletionService<>(pool);
+            Set<String> usedNames = new HashSet<>();
+            int window = threads * 2;
+            int submitted = 0;
+            int written = 0;
+            long bytes = 0;
+
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), WRITE_BUFFER_BYTES))) {
+                // A PDF tartalma eleve tömörített, a ZIP-nek nem éri meg sokat dolgoznia rajta
+                zip.setLevel(Deflater.BEST_SPEED);
+
+                progress.onProgress(0.0, "0/" + total);
+                while (written < total) {
+                    // Új feladatok, amíg van hely az ablakban (korlátos memória)
+                    while (submitted < total && submitted - written < window) {
+                        JobCardRow card = cards.get(submitted++);
+                        String name = entryName(card, usedNames);
+                        done.submit(() -> render(card, name));
+                    }
+
+                    Rendered r = take(done);
+                    zip.putNextEntry(new ZipEntry(r.entryName()));
+                    zip.write(r.pdf());
+                    zip.closeEntry();
+                    bytes += r.pdf().length;
+                    written++;
+                    progress.onProgress((double) written / total, written + "/" + total);
+                }
+            }
+
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new ExportResult(written, bytes, Duration.ofNanos(System.nanoTime() - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException("A ZIP írása sikertelen: " + target, e);
+        } finally {
+            pool.shutdownNow(); // hiba/megszakítás esetén a még futókat is leállítjuk
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // Az ideiglenes fájl legfeljebb ott marad
+                }
+            }
+        }
+    }
+
+    /** Egy munkalap PDF-je a memóriába (a worker szálon fut). */
+    private Rendered render(JobCardRow card, String entryName) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        renderer.render(renderer.load(card.id()), out, ProgressListener.NONE);
+        return new Rendered(entryName, out.toByteArray());
+    }
+
+    /** A következő elkészült PDF; egy munkalap hibája az egész exportot leállítja. */
+    private static Rendered take(CompletionService<Rendered> done) throws InterruptedException {
+        Future<Rendered> f = done.take();
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new IllegalStateException("Egy munkalap PDF-je nem készült el: " + cause.getMessage(), cause);
+        }
+    }
+
+    /** Fájlnév a ZIP-ben: a munkalapszám (biztonságos karakterekkel), ütközés esetén az ID-val. */
+    private static String entryName(JobCardRow card, Set<String> used) {
+        String base = (card.jobcardNo() != null && !card.jobcardNo().isBlank())
+                ? card.jobcardNo().replaceAll("[^0-9A-Za-z_-]", "_")
+                : "munkalap-" + card.id();
+        String name = base + ".pdf";
+        if (!used.add(name)) {
+            name = base + "-" + card.id() + ".pdf";
+            used.add(name);
+        }
+        return name;
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "carenda-export-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,147 @@
+package hu.carenda.app.pdf;
+
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfPCell;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Közös PDF betűtípusok és cellastílusok (OpenPDF).
+ *
+ * A betűk egyszer, az első használatkor töltődnek be, és minden dokumentum ugyanazokat
+ * a példányokat használja. Elsősorban beágyazott Unicode TTF-et keresünk (hogy az ő/ű
+ * minden gépen helyesen jelenjen meg), ennek hiányában a beépített Helvetica-t
+ * közép-európai (CP1250) kódolással.
+ *
+ * Szálbiztos: a {@link Font} és {@link BaseFont} példányokat senki nem módosítja,
+ * a cellakészítők pedig minden hívásra új (csak a szöveget hordozó) cellát adnak.
+ * A visszaadott Font-okon setter hívása tilos!
+ */
+public final class PdfStyles {
+
+    /** Az alkalmazással szállított betű (ha a csomagba bekerül). */
+    private static final String BUNDLED_REGULAR = "/hu/carenda/app/fonts/DejaVuSans.ttf";
+    private static final String BUNDLED_BOLD = "/hu/carenda/app/fonts/DejaVuSans-Bold.ttf";
+
+    /** Rendszerbetűk (Linux, Windows), a keresés sorrendjében: { normál, félkövér }. */
+    private static final List<String[]> SYSTEM_FONTS = List.of(
+            new String[]{"/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf", "/usr/share/fonts/truetype/dejavu/DejaVuSans-Bold.ttf"},
+            new String[]{"/usr/share/fonts/TTF/DejaVuSans.ttf", "/usr/share/fonts/TTF/DejaVuSans-Bold.ttf"},
+            new String[]{"C:/Windows/Fonts/arial.ttf", "C:/Windows/Fonts/arialbd.ttf"}
+    );
+
+    /** A fejléc cellák háttérszíne. */
+    private static final Color HEADER_BG = new Color(230, 230, 230);
+
+    public static final Font TITLE;
+    public static final Font HEADING;
+    public static final Font BODY;
+    public static final Font BODY_BOLD;
+
+    static {
+        BaseFont[] fonts = loadBaseFonts();
+        TITLE = new Font(fonts[1], 18);
+        HEADING = new Font(fonts[1], 12);
+        BODY = new Font(fonts[0], 10);
+        BODY_BOLD = new Font(fonts[1], 10);
+    }
+
+    private PdfStyles() {
+    }
+
+    /**
+     * Szürke hátterű táblázatfejléc cella.
+     */
+    public static PdfPCell header(String text) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, BODY_BOLD));
+        cell.setBackgroundColor(HEADER_BG);
+        cell.setPadding(4f);
+        return cell;
+    }
+
+    /**
+     * Normál táblázatcella.
+     */
+    public static PdfPCell cell(String text) {
+        return cell(text, 4f);
+    }
+
+    /**
+     * Normál táblázatcella egyedi belső margóval (pl. többsoros blokkokhoz).
+     */
+    public static PdfPCell cell(String text, float padding) {
+        PdfPCell cell = new PdfPCell(new Phrase(text == null ? "" : text, BODY));
+        cell.setPadding(padding);
+        return cell;
+    }
+
+    /**
+     * Keret nélküli, jobbra igazított cella az összesítő táblához.
+     *
+     * @param emphasized true esetén félkövér, nagyobb betűvel (végösszeg, fizetendő).
+     */
+    public static PdfPCell total(String text, boolean emphasized) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, emphasized ? HEADING : BODY));
+        cell.setBorder(Rectangle.NO_BORDER);
+        cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        cell.setPadding(2f);
+        return cell;
+    }
+
+    /**
+     * A használt betűkészlet neve (diagnosztikához).
+     */
+    public static String fontName() {
+        return BODY.getBaseFont().getPostscriptFontName();
+    }
+
+    /**
+     * { normál, félkövér } alapbetűk: csomagolt TTF, rendszer TTF, végül Helvetica CP1250.
+     */
+    private static BaseFont[] loadBaseFonts() {
+        try {
+            byte[] regular = readResource(BUNDLED_REGULAR);
+            byte[] bold = readResource(BUNDLED_BOLD);
+            if (regular != null && bold != null) {
+                return new BaseFont[]{
+                        BaseFont.createFont("DejaVuSans.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED, true, regular, null),
+                        BaseFont.createFont("DejaVuSans-Bold.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED, true, bold, null)
+                };
+            }
+            for (String[] pair : SYSTEM_FONTS) {
+                if (Files.isReadable(Path.of(pair[0])) && Files.isReadable(Path.of(pair[1]))) {
+                    return new BaseFont[]{
+                            BaseFont.createFont(pair[0], BaseFont.IDENTITY_H, BaseFont.EMBEDDED),
+                            BaseFont.createFont(pair[1], BaseFont.IDENTITY_H, BaseFont.EMBEDDED)
+                    };
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[PDF] Unicode betű betöltése sikertelen, Helvetica lesz: " + e.getMessage());
+        }
+
+        try {
+            return new BaseFont[]{
+                    BaseFont.createFont(BaseFont.HELVETICA, BaseFont.CP1250, BaseFont.NOT_EMBEDDED),
+                    BaseFont.createFont(BaseFont.HELVETICA_BOLD, BaseFont.CP1250, BaseFont.NOT_EMBEDDED)
+            };
+        } catch (Exception e) {
+            throw new IllegalStateException("A beépített PDF betűtípus nem tölthető be.", e);
+        }
+    }
+
+    private static byte[] readResource(String path) throws IOException {
+        try (InputStream in = PdfStyles.class.getResourceAsStream(path)) {
+            return in != null ? in.readAllBytes() : null;
+        }
+    }
+}
@@ -1,18 +1,58 @@
 package hu.carenda.app.repository;
 
 import hu.carenda.app.db.Database;
+import hu.carenda.app.events.DomainEvent.AppointmentChanged;
+import hu.carenda.app.events.DomainEvent.AppointmentDeleted;
+import hu.carenda.app.db.Tx;
 import hu.carenda.app.model.Appointment;
+import hu.carenda.app.model.AppointmentRow;
+import hu.carenda.app.repository.ChangeTracker.Dataset;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 public class AppointmentDao {
 
+    /**
+     * Egy foglalás leghosszabb megengedett időtartama (perc). Az átfedés-keresés erre
+     * támaszkodik: egy [start, end) intervallumba csak olyan foglalás lóghat bele, amely
+     * legfeljebb ennyivel a start előtt kezdődött, így a lekérdezés korlátos index-tartomány.
+     */
+    public static final int MAX_DURATION_MINUTES = 24 * 60;
+
+    /**
+     * Elutasítja a nem pozitív, vagy a {@link #MAX_DURATION_MINUTES}-nál hosszabb időtartamot.
+     */
+    private static void requireValidDuration(int durationMinutes) {
+        if (durationMinutes <= 0 || durationMinutes > MAX_DURATION_MINUTES) {
+            throw new IllegalArgumentException("Érvénytelen időtartam: " + durationMinutes
+                    + " perc (1.." + MAX_DURATION_MINUTES + " lehet).");
+        }
+    }
+
+    /**
+     * Beállítja a kezdés/befejezés epoch perc paramétereket a start_ts szövegből,
+     * vagy NULL-t, ha az nem értelmezhető.
+     */
+    private void setEpochParams(PreparedStatement ps, int startIndex, String startTs, int durationMinutes) throws SQLException {
+        LocalDateTime start = Appointment.parseStartTs(startTs);
+        if (start != null) {
+            int startMin = Appointment.toEpochMinutes(start);
+            ps.setInt(startIndex, startMin);
+            ps.setInt(startIndex + 1, startMin + durationMinutes);
+        } else {
+            ps.setNull(startIndex, Types.INTEGER);
+            ps.setNull(startIndex + 1, Types.INTEGER);
+        }
+    }
+
     /**
      * Segédfüggvény: Csak az 'appointments' tábla alap mezőit map-eli.
      * A JOIN-olt mezőket (ownerName, vehiclePlate) a hívó metódusoknak kell
@@ -27,33 +67,60 @@ public class AppointmentDao {
         a.setDurationMinutes(rs.getInt("duration"));
         a.setNote(rs.getString("note"));
         a.setStatus(rs.getString("status"));
+        a.setStartEpochMin(getIntOrNull(rs, "start_epoch_min"));
+        a.setEndEpochMin(getIntOrNull(rs, "end_epoch_min"));
 
         return a;
     }
 
+    /**
+     * A listanézetekhez használt könnyű sor (a JOIN-olt customer_name / vehicle_plate oszlopokkal).
+     */
+    private AppointmentRow mapRow(ResultSet rs) throws SQLException {
+        return new AppointmentRow(
+                rs.getInt("id"),
+                rs.getInt("customer_id"),
+                rs.getInt("vehicle_id"),
+                rs.getString("start_ts"),
+                rs.getInt("duration"),
+                rs.getString("note"),
+                rs.getString("status"),
+                getIntOrNull(rs, "start_epoch_min"),
+                getIntOrNull(rs, "end_epoch_min"),
+                rs.getString("customer_name"),
+                rs.getString("vehicle_plate"));
+    }
+
+    /**
+     * Integer oszlop olvasása, NULL esetén null.
+     * (Az rs.getObject(..., Integer.class) az sqlite-jdbc-ben NULL-ra kivételt dob.)
+     */
+    private static Integer getIntOrNull(ResultSet rs, String column) throws SQLException {
+        int v = rs.getInt(column);
+        return rs.wasNull() ? null : v;
+    }
+
     /**
      * Minden időpont lekérdezése, ügyféllel és járművel JOIN-olva.
      * @return 
      */
-    public List<Appointment> findAll() {
+    public List<AppointmentRow> findAll() {
         String sql = """
             SELECT a.id, a.customer_id, a.vehicle_id, a.start_ts, a.duration, a.note, a.status,
+                   a.start_epoch_min, a.end_epoch_min,
                    c.name AS customer_name, v.plate AS vehicle_plate
               FROM appointments a
               LEFT JOIN customers c ON c.id = a.customer_id
               LEFT JOIN vehicles v ON v.id = a.vehicle_id
              ORDER BY a.start_ts DESC, a.id DESC
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              Statement st = c.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
 
-            List<Appointment> out = new ArrayList<>();
+            List<AppointmentRow> out = new ArrayList<>();
             while (rs.next()) {
-                Appointment a = map(rs);
-                a.setOwnerName(rs.getString("customer_name"));
-                a.setVehiclePlate(rs.getString("vehicle_plate"));
-                out.add(a);
+                out.add(mapRow(rs));
             }
             return out;
         } catch (SQLException e) {
@@ -61,15 +128,53 @@ public class AppointmentDao {
         }
     }
 
+    /**
+     * Egyetlen listasor ID alapján, a findAll() JOIN-jaival (a listanézet célzott frissítéséhez).
+     * @param id
+     * @return A sor, vagy null, ha már nem létezik.
+     */
+    public AppointmentRow findRowById(int id) {
+        String sql = """
+            SELECT a.id, a.customer_id, a.vehicle_id, a.start_ts, a.duration, a.note, a.status,
+                   a.start_epoch_min, a.end_epoch_min,
+                   c.name AS customer_name, v.plate AS vehicle_plate
+              FROM appointments a
+              LEFT JOIN customers c ON c.id = a.customer_id
+              LEFT JOIN vehicles v ON v.id = a.vehicle_id
+             WHERE a.id=?
+            """;
+        try (Connection c = Database.read();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: AppointmentDao.findRowById", e);
+        }
+    }
+
     /**
      * Keresés ügyfél név / rendszám / státusz / megjegyzés alapján.
      * @param q
      * @return 
      */
-    public List<Appointment> search(String q) {
+    public List<AppointmentRow> search(String q) {
+        boolean fts = FullTextSearch.usable(q);
         String like = "%" + q.trim().toLowerCase() + "%";
-        String sql = """
+        String sql = fts ? """
             SELECT a.id, a.customer_id, a.vehicle_id, a.start_ts, a.duration, a.note, a.status,
+                   a.start_epoch_min, a.end_epoch_min,
+                   c.name AS customer_name, v.plate AS vehicle_plate
+              FROM appointments_fts f
+              JOIN appointments a ON a.id = f.rowid
+              LEFT JOIN customers c ON c.id = a.customer_id
+              LEFT JOIN vehicles  v ON v.id = a.vehicle_id
+             WHERE appointments_fts MATCH ?
+             ORDER BY f.rank, a.start_ts DESC, a.id DESC
+            """ : """
+            SELECT a.id, a.customer_id, a.vehicle_id, a.start_ts, a.duration, a.note, a.status,
+                   a.start_epoch_min, a.end_epoch_min,
                    c.name AS customer_name, v.plate AS vehicle_plate
               FROM appointments a
               LEFT JOIN customers c ON c.id = a.customer_id
@@ -80,19 +185,20 @@ public class AppointmentDao {
                 OR lower(a.note)    LIKE ?
              ORDER BY a.start_ts DESC, a.id DESC
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, like);
-            ps.setString(2, like);
-            ps.setString(3, like);
-            ps.setString(4, like);
+            if (fts) {
+                ps.setString(1, FullTextSearch.phrase(q));
+            } else {
+                ps.setString(1, like);
+                ps.setString(2, like);
+                ps.setString(3, like);
+                ps.setString(4, like);
+            }
             try (var rs = ps.executeQuery()) {
-                List<Appointment> out = new ArrayList<>();
+                List<AppointmentRow> out = new ArrayList<>();
                 while (rs.next()) {
-                    Appointment a = map(rs);
-                    a.setOwnerName(rs.getString("customer_name"));
-                    a.setVehiclePlate(rs.getString("vehicle_plate"));
-                    out.add(a);
+                    out.add(mapRow(rs));
                 }
                 return out;
             }
@@ -108,10 +214,11 @@ public class AppointmentDao {
      */
     public Appointment findById(int id) {
         String sql = """
-            SELECT id, customer_id, vehicle_id, start_ts, duration, note, status
+            SELECT id, customer_id, vehicle_id, start_ts, duration, note, status,
+                   start_epoch_min, end_epoch_min
               FROM appointments WHERE id=?
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, id);
             try (var rs = ps.executeQuery()) {
@@ -122,6 +229,128 @@ public class AppointmentDao {
         }
     }
 
+    /**
+     * Jelzi, hogy a kért időszakban nincs szabad kapacitás (a mentés nem történt meg).
+     */
+    public static class CapacityExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int concurrent;
+
+        public CapacityExceededException(int concurrent, int capacity) {
+            super("Nincs szabad kapacitás: az időszakban már " + concurrent
+                    + " párhuzamos foglalás van (max. " + capacity + ").");
+            this.concurrent = concurrent;
+        }
+
+        /** @return A már meglévő párhuzamos foglalások maximális száma az időszakban. */
+        public int getConcurrent() {
+            return concurrent;
+        }
+    }
+
+    /**
+     * Átfedő foglalások maximális egyidejű száma egy intervallumon belül, EGY lekérdezésben.
+     *
+     * Az átfedő sorokból (index: idx_appt_epoch) kezdés (+1) és befejezés (-1) eseményeket
+     * képez, amelyeket időrendben összegez (window függvény). Azonos időpontban a befejezés
+     * kerül előre, így az egymás után következő (nem átfedő) foglalások nem számítanak ütközésnek.
+     * Az alsó korlát (?4 = {@link #MAX_DURATION_MINUTES}) miatt nem olvassa végig a teljes múltat.
+     */
+    private static final String MAX_CONCURRENT_SQL = """
+        WITH ov AS (
+            SELECT start_epoch_min AS s, end_epoch_min AS e
+              FROM appointments
+             WHERE start_epoch_min > ?2 - ?4 AND start_epoch_min < ?1
+               AND end_epoch_min > ?2
+               AND (?3 IS NULL OR id <> ?3)
+        ),
+        ev AS (
+            SELECT max(s, ?2) AS t, 1 AS d FROM ov
+            UNION ALL
+            SELECT min(e, ?1) AS t, -1 AS d FROM ov
+        )
+        SELECT coalesce(max(running), 0)
+          FROM (SELECT sum(d) OVER (ORDER BY t, d ROWS UNBOUNDED PRECEDING) AS running FROM ev)
+        """;
+
+    private int queryMaxConcurrent(Connection c, int startMin, int endMin, Integer excludeId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(MAX_CONCURRENT_SQL)) {
+            ps.setInt(1, endMin);
+            ps.setInt(2, startMin);
+            if (excludeId != null) {
+                ps.setInt(3, excludeId);
+            } else {
+                ps.setNull(3, Types.INTEGER);
+            }
+            ps.setInt(4, MAX_DURATION_MINUTES);
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Megadja, hogy a [start, end) intervallum bármely pillanatában legfeljebb hány
+     * meglévő foglalás fut egyszerre.
+     * @param start A vizsgált intervallum kezdete.
+     * @param end A vizsgált intervallum vége.
+     * @param excludeId Ezt az időpontot kihagyja (szerkesztéskor önmaga), vagy null.
+     * @return A párhuzamos foglalások maximális száma (0, ha nincs átfedés).
+     */
+    public int maxConcurrentBookings(LocalDateTime start, LocalDateTime end, Integer excludeId) {
+        try (Connection c = Database.read()) {
+            return queryMaxConcurrent(c, Appointment.toEpochMinutes(start), Appointment.toEpochMinutes(end), excludeId);
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: AppointmentDao.maxConcurrentBookings", e);
+        }
+    }
+
+    /**
+     * Kapacitás-ellenőrzött mentés: a foglaltság számlálása és az INSERT/UPDATE
+     * ugyanabban az (IMMEDIATE) író tranzakcióban fut, így két párhuzamos mentés
+     * nem foglalhatja le egyszerre az utolsó szabad helyet.
+     * Ha a hívó már egy {@link Tx} hatókörben van, ahhoz csatlakozik.
+     * @param id A szerkesztett időpont ID-ja, vagy null új időpont esetén.
+     * @param customerId
+     * @param vehicleId
+     * @param startTs
+     * @param durationMinutes
+     * @param note
+     * @param status
+     * @param capacity Az egyszerre megengedett foglalások száma.
+     * @return Az időpont ID-ja (új esetén a generált ID).
+     * @throws CapacityExceededException ha az időszak már tele van.
+     */
+    public int saveWithCapacityCheck(Integer id, int customerId, int vehicleId, String startTs,
+                                     int durationMinutes, String note, String status, int capacity) {
+        LocalDateTime start = Appointment.parseStartTs(startTs);
+        if (start == null) {
+            throw new IllegalArgumentException("Érvénytelen kezdési időpont: " + startTs);
+        }
+        int startMin = Appointment.toEpochMinutes(start);
+
+        try {
+            return Tx.call(c -> {
+                int concurrent = queryMaxConcurrent(c, startMin, startMin + durationMinutes, id);
+                if (concurrent >= capacity) {
+                    throw new CapacityExceededException(concurrent, capacity);
+                }
+                int savedId;
+                if (id == null) {
+                    savedId = doInsert(c, customerId, vehicleId, startTs, durationMinutes, note, status);
+                } else {
+                    doUpdate(c, id, customerId, vehicleId, startTs, durationMinutes, note, status);
+                    savedId = id;
+                }
+                ChangeTracker.markChanged(Dataset.APPOINTMENTS, v -> new AppointmentChanged(savedId, v));
+                return savedId;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: AppointmentDao.saveWithCapacityCheck", e);
+        }
+    }
+
     /**
      * Új időpont beszúrása.
      * @param customerId
@@ -134,18 +363,31 @@ public class AppointmentDao {
      */
     public int insert(int customerId, int vehicleId, String startTs,
                       int durationMinutes, String note, String status) {
+        try (Connection c = Database.write()) {
+            int id = doInsert(c, customerId, vehicleId, startTs, durationMinutes, note, status);
+            ChangeTracker.markChanged(Dataset.APPOINTMENTS, v -> new AppointmentChanged(id, v));
+            return id;
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: AppointmentDao.insert", e);
+        }
+    }
+
+    private int doInsert(Connection c, int customerId, int vehicleId, String startTs,
+                         int durationMinutes, String note, String status) throws SQLException {
+        requireValidDuration(durationMinutes);
         String sql = """
-            INSERT INTO appointments(customer_id, vehicle_id, start_ts, duration, note, status)
-            VALUES (?,?,?,?,?,?)
+            INSERT INTO appointments(customer_id, vehicle_id, start_ts, duration, note, status,
+                                     start_epoch_min, end_epoch_min)
+            VALUES (?,?,?,?,?,?,?,?)
             """;
-        try (Connection c = Database.get();
-             PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, customerId);
             ps.setInt(2, vehicleId);
             ps.setString(3, startTs);
             ps.setInt(4, durationMinutes);
             ps.setString(5, note);
             ps.setString(6, status);
+            setEpochParams(ps, 7, startTs, durationMinutes);
             ps.executeUpdate();
             try (var keys = ps.getGeneratedKeys()) {
                 if (keys.next()) {
@@ -154,8 +396,6 @@ public class AppointmentDao {
                     throw new SQLException("Időpont létrehozása sikertelen, nem kaptunk ID-t.");
                 }
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("Adatbázis hiba: AppointmentDao.insert", e);
         }
     }
 
@@ -171,23 +411,33 @@ public class AppointmentDao {
      */
     public void update(int id, int customerId, int vehicleId, String startTs,
                        int durationMinutes, String note, String status) {
+        try (Connection c = Database.write()) {
+            doUpdate(c, id, customerId, vehicleId, startTs, durationMinutes, note, status);
+            ChangeTracker.markChanged(Dataset.APPOINTMENTS, v -> new AppointmentChanged(id, v));
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: AppointmentDao.update", e);
+        }
+    }
+
+    private void doUpdate(Connection c, int id, int customerId, int vehicleId, String startTs,
+                          int durationMinutes, String note, String status) throws SQLException {
+        requireValidDuration(durationMinutes);
         String sql = """
             UPDATE appointments
-               SET customer_id=?, vehicle_id=?, start_ts=?, duration=?, note=?, status=?
+               SET customer_id=?, vehicle_id=?, start_ts=?, duration=?, note=?, status=?,
+                   start_epoch_min=?, end_epoch_min=?
              WHERE id=?
             """;
-        try (Connection c = Database.get();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, customerId);
             ps.setInt(2, vehicleId);
             ps.setString(3, startTs);
             ps.setInt(4, durationMinutes);
             ps.setString(5, note);
             ps.setString(6, status);
-            ps.setInt(7, id);
+            setEpochParams(ps, 7, startTs, durationMinutes);
+            ps.setInt(9, id);
             ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Adatbázis hiba: AppointmentDao.update", e);
         }
     }
 
@@ -197,63 +447,48 @@ public class AppointmentDao {
      */
     public void delete(int id) {
         String sql = "DELETE FROM appointments WHERE id=?";
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, id);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Adatbázis hiba: AppointmentDao.delete", e);
-        }
-    }
-
-    /**
-     * Napi lekérdezés (YYYY-MM-DD)
-     * @param dayIso
-     * @return 
-     */
-    public List<Appointment> findForDay(String dayIso) {
-        String sql = """
-            SELECT id, customer_id, vehicle_id, start_ts, duration, note, status
-              FROM appointments
-             WHERE substr(start_ts,1,10)=?
-             ORDER BY start_ts
-            """;
-        try (Connection c = Database.get();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, dayIso);
-            try (var rs = ps.executeQuery()) {
-                var out = new ArrayList<Appointment>();
-                while (rs.next()) {
-                    out.add(map(rs));
-                }
-                return out;
+            if (ps.executeUpdate() > 0) { // a már nem létező sor törlése nem változás
+                ChangeTracker.markChanged(Dataset.APPOINTMENTS, v -> new AppointmentDeleted(id, v));
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Adatbázis hiba: AppointmentDao.findForDay", e);
+            throw new RuntimeException("Adatbázis hiba: AppointmentDao.delete", e);
         }
     }
 
     /**
-     * Időpontok lekérdezése két dátum között.
-     * @param fromIso
-     * @param toIso
+     * Időpontok lekérdezése, amelyek kezdete a [from, to) tartományba esik,
+     * ügyfélnévvel és rendszámmal JOIN-olva (mint a findAll()), így a naptárnak
+     * nem kell a teljes ügyfél- és járműtáblát betöltenie.
+     * Index-tartomány keresés az epoch perc oszlopon.
+     * @param from
+     * @param to
      * @return 
      */
-    public List<Appointment> findBetween(String fromIso, String toIso) {
+    public List<Appointment> findBetween(LocalDateTime from, LocalDateTime to) {
         var sql = """
-            SELECT id, customer_id, vehicle_id, start_ts, duration, note, status
-              FROM appointments
-             WHERE start_ts >= ? AND start_ts < ?
-             ORDER BY start_ts
+            SELECT a.id, a.customer_id, a.vehicle_id, a.start_ts, a.duration, a.note, a.status,
+                   a.start_epoch_min, a.end_epoch_min,
+                   c.name AS customer_name, v.plate AS vehicle_plate
+              FROM appointments a
+              LEFT JOIN customers c ON c.id = a.customer_id
+              LEFT JOIN vehicles  v ON v.id = a.vehicle_id
+             WHERE a.start_epoch_min >= ? AND a.start_epoch_min < ?
+             ORDER BY a.start_epoch_min, a.id
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, fromIso);
-            ps.setString(2, toIso);
+            ps.setInt(1, Appointment.toEpochMinutes(from));
+            ps.setInt(2, Appointment.toEpochMinutes(to));
             try (var rs = ps.executeQuery()) {
                 var out = new ArrayList<Appointment>();
                 while (rs.next()) {
-                    out.add(map(rs));
+                    Appointment a = map(rs);
+                    a.setOwnerName(rs.getString("customer_name"));
+                    a.setVehiclePlate(rs.getString("vehicle_plate"));
+                    out.add(a);
                 }
                 return out;
             }
@@ -0,0 +1,112 @@
+package hu.carenda.app.repository;
+
+import hu.carenda.app.db.Tx;
+import hu.carenda.app.events.DomainEvent;
+import hu.carenda.app.events.EventBus;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Adathalmazonkénti változásszámláló.
+ *
+ * A DAO-k minden sikeres írás után megnövelik az érintett adathalmaz verzióját.
+ * A nézetek (pl. a Dashboard fülei) megjegyzik, melyik verziót töltötték be utoljára,
+ * és csak akkor kérdeznek le újra, ha azóta változás történt.
+ *
+ * Egy változáshoz domain esemény is tartozhat ({@link #markChanged(Dataset, Function)}):
+ * az esemény a számláló növelésének pillanatában készült {@link Stamp}-et hordozza,
+ * így a célzottan frissítő nézet pontosan tudja, melyik verziót nyugtázhatja.
+ *
+ * Szálbiztos; a számlálók a program futása alatt monoton nőnek.
+ */
+public final class ChangeTracker {
+
+    /** A nyomon követett adathalmazok. */
+    public enum Dataset {
+        CUSTOMERS, VEHICLES, APPOINTMENTS, JOBCARDS
+    }
+
+    /**
+     * Az összes számláló közvetlenül egy változás előtt és után.
+     *
+     * @param before A számlálók a növelés előtt.
+     * @param after  A számlálók a növelés után.
+     */
+    public record Stamp(Map<Dataset, Long> before, Map<Dataset, Long> after) {
+
+        /** @return A megadott adathalmazok együttes verziója a változás előtt. */
+        public long before(Dataset... datasets) {
+            return sum(before, datasets);
+        }
+
+        /** @return A megadott adathalmazok együttes verziója a változás után. */
+        public long after(Dataset... datasets) {
+            return sum(after, datasets);
+        }
+
+        private static long sum(Map<Dataset, Long> versions, Dataset... datasets) {
+            long sum = 0;
+            for (Dataset d : datasets) {
+                sum += versions.get(d);
+            }
+            return sum;
+        }
+    }
+
+    private static final Map<Dataset, AtomicLong> VERSIONS = new EnumMap<>(Dataset.class);
+
+    static {
+        for (Dataset d : Dataset.values()) {
+            VERSIONS.put(d, new AtomicLong());
+        }
+    }
+
+    private ChangeTracker() {
+    }
+
+    /**
+     * Jelzi, hogy az adott adathalmaz megváltozott, és publikálja a változás domain eseményét.
+     * A DAO-k hívják sikeres írás után. Tranzakción ({@link Tx}) belül a jelzés a commit utánra
+     * halasztódik (visszagörgetéskor elmarad), így egy nézet nem tölthet be új verziószámmal
+     * még nem látható adatot. A számláló növelése és az esemény elkészítése egy lépés.
+     *
+     * @param dataset A megváltozott adathalmaz.
+     * @param event   Az esemény a növelés előtti / utáni verziókból.
+     */
+    public static void markChanged(Dataset dataset, Function<Stamp, DomainEvent> event) {
+        Tx.afterCommit(() -> EventBus.publish(event.apply(increment(dataset))));
+    }
+
+    /** Egy számláló növelése; az előtte / utána látható állapot konzisztens pillanatkép. */
+    private static synchronized Stamp increment(Dataset dataset) {
+        Map<Dataset, Long> before = snapshot();
+        VERSIONS.get(dataset).incrementAndGet();
+        return new Stamp(before, snapshot());
+    }
+
+    private static Map<Dataset, Long> snapshot() {
+        Map<Dataset, Long> out = new EnumMap<>(Dataset.class);
+        VERSIONS.forEach((d, v) -> out.put(d, v.get()));
+        return Collections.unmodifiableMap(out);
+    }
+
+    /**
+     * A megadott adathalmazok együttes verziója (a számlálók összege).
+     * Bármelyik változásakor nő, így egy nézet egyetlen számmal követheti
+     * az összes adathalmazt, amelytől a tartalma függ.
+     *
+     * @param datasets Az adathalmazok, amelyekből a nézet adatai származnak.
+     * @return Az együttes verzió.
+     */
+    public static long version(Dataset... datasets) {
+        long sum = 0;
+        for (Dataset d : datasets) {
+            sum += VERSIONS.get(d).get();
+        }
+        return sum;
+    }
+}
@@ -1,7 +1,11 @@
 package hu.carenda.app.repository;
 
 import hu.carenda.app.db.Database;
+import hu.carenda.app.events.DomainEvent.CustomerChanged;
+import hu.carenda.app.events.DomainEvent.CustomerDeleted;
 import hu.carenda.app.model.Customer;
+import hu.carenda.app.model.CustomerRow;
+import hu.carenda.app.repository.ChangeTracker.Dataset;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -13,6 +17,17 @@ import java.util.List;
 
 public class CustomerDao {
 
+    /** findById() gyorsítótára; közös az összes példány között. */
+    private static final EntityCache<Customer> CACHE = new EntityCache<>(500,
+            c -> new Customer(c.getId(), c.getName(), c.getPhone(), c.getEmail()));
+
+    /**
+     * @return A findById() gyorsítótár számlálói (találati arány megfigyeléséhez).
+     */
+    public static EntityCache.Stats cacheStats() {
+        return CACHE.stats();
+    }
+
     /**
      * Segédfüggvény, ami egy ResultSet-sorból Customer objektumot épít.
      */
@@ -25,6 +40,13 @@ public class CustomerDao {
         return c;
     }
 
+    /**
+     * Mint a map(), de a listanézetekhez használt könnyű sort építi.
+     */
+    private CustomerRow mapRow(ResultSet rs) throws SQLException {
+        return new CustomerRow(rs.getInt("id"), rs.getString("name"), rs.getString("phone"), rs.getString("email"));
+    }
+
     /**
      * Az összes ügyfél listázása névsorrendben.
      * @return 
@@ -36,7 +58,7 @@ public class CustomerDao {
              ORDER BY name
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              Statement st = c.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
 
@@ -51,14 +73,69 @@ public class CustomerDao {
         }
     }
 
+    /**
+     * Az összes ügyfél a listanézethez (könnyű sorok), névsorrendben.
+     * @return 
+     */
+    public List<CustomerRow> findAllRows() {
+        String sql = """
+            SELECT id, name, phone, email
+              FROM customers
+             ORDER BY name
+            """;
+
+        try (Connection c = Database.read();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+
+            List<CustomerRow> out = new ArrayList<>();
+            while (rs.next()) {
+                out.add(mapRow(rs));
+            }
+            return out;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: CustomerDao.findAllRows", e);
+        }
+    }
+
+    /**
+     * Egyetlen listasor ID alapján (a listanézet célzott frissítéséhez).
+     * @param id
+     * @return A sor, vagy null, ha már nem létezik.
+     */
+    public CustomerRow findRowById(int id) {
+        String sql = """
+            SELECT id, name, phone, email
+              FROM customers
+             WHERE id=?
+            """;
+        try (Connection c = Database.read();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: CustomerDao.findRowById", e);
+        }
+    }
+
     /**
      * Név/telefon/e-mail LIKE keresés (case-insensitive).
      * @param q
      * @return 
      */
-    public List<Customer> search(String q) {
+    public List<CustomerRow> search(String q) {
+        boolean fts = FullTextSearch.usable(q);
         String like = "%" + q.trim().toLowerCase() + "%";
-        String sql = """
+        String sql = fts ? """
+            SELECT c.id, c.name, c.phone, c.email
+              FROM customers_fts f
+              JOIN customers c ON c.id = f.rowid
+             WHERE customers_fts MATCH ?
+             ORDER BY f.rank, c.name
+            """ : """
             SELECT id, name, phone, email
               FROM customers
              WHERE lower(name)  LIKE ?
@@ -67,17 +144,21 @@ public class CustomerDao {
              ORDER BY name
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
-            ps.setString(1, like);
-            ps.setString(2, like);
-            ps.setString(3, like);
+            if (fts) {
+                ps.setString(1, FullTextSearch.phrase(q));
+            } else {
+                ps.setString(1, like);
+                ps.setString(2, like);
+                ps.setString(3, like);
+            }
 
             try (var rs = ps.executeQuery()) {
-                List<Customer> out = new ArrayList<>();
+                List<CustomerRow> out = new ArrayList<>();
                 while (rs.next()) {
-                    out.add(map(rs));
+                    out.add(mapRow(rs));
                 }
                 return out;
             }
@@ -87,18 +168,23 @@ public class CustomerDao {
     }
 
     /**
-     * Egy ügyfél lekérése ID alapján.
+     * Egy ügyfél lekérése ID alapján. Gyorsítótárazott: ismételt hívásnál nem fordul
+     * az adatbázishoz; a visszaadott példány másolat, szabadon módosítható.
      * @param id
      * @return 
      */
     public Customer findById(int id) {
+        return CACHE.get(id, this::loadById);
+    }
+
+    private Customer loadById(int id) {
         String sql = """
             SELECT id, name, phone, email
               FROM customers
              WHERE id=?
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, id);
@@ -124,7 +210,7 @@ public class CustomerDao {
             VALUES (?,?,?)
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setString(1, name);
@@ -134,7 +220,9 @@ public class CustomerDao {
 
             try (var keys = ps.getGeneratedKeys()) {
                 if (keys.next()) {
-                    return keys.getInt(1);
+                    int newId = keys.getInt(1);
+                    ChangeTracker.markChanged(Dataset.CUSTOMERS, v -> new CustomerChanged(newId, v));
+                    return newId;
                 } else {
                     throw new SQLException("Ügyfél létrehozása sikertelen, nem kaptunk ID-t.");
                 }
@@ -158,7 +246,7 @@ public class CustomerDao {
              WHERE id=?
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setString(1, name);
@@ -166,6 +254,8 @@ public class CustomerDao {
             ps.setString(3, email);
             ps.setInt(4, id);
             ps.executeUpdate();
+            CACHE.invalidate(id);
+            ChangeTracker.markChanged(Dataset.CUSTOMERS, v -> new CustomerChanged(id, v));
 
         } catch (SQLException e) {
             throw new RuntimeException("Adatbázis hiba: CustomerDao.update", e);
@@ -179,11 +269,15 @@ public class CustomerDao {
     public void delete(int id) {
         String sql = "DELETE FROM customers WHERE id=?";
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, id);
-            ps.executeUpdate();
+            if (ps.executeUpdate() > 0) { // a már nem létező sor törlése nem változás
+                CACHE.invalidate(id);
+                VehicleDao.invalidateOwner(id); // ON DELETE SET NULL a vehicles.customer_id-n
+                ChangeTracker.markChanged(Dataset.CUSTOMERS, v -> new CustomerDeleted(id, v));
+            }
 
         } catch (SQLException e) {
             throw new RuntimeException("Adatbázis hiba: CustomerDao.delete", e);
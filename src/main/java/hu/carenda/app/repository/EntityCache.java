@@ -0,0 +1,157 @@
+package hu.carenda.app.repository;
+
+import hu.carenda.app.db.Tx;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * ID szerint kulcsolt, korlátos méretű read-through gyorsítótár egy DAO findById()-ja elé,
+ * LRU kiürítéssel.
+ *
+ * A modellek módosítható JavaFX bean-ek, ezért a gyorsítótár saját példányt tárol, és
+ * minden találatnál másolatot ad vissza: a hívó nyugodtan szerkesztheti, a tárolt
+ * példány ettől nem változik.
+ *
+ * Konzisztencia:
+ * <ul>
+ *   <li>A DAO írásai érvénytelenítik az érintett bejegyzést, azonnal és (tranzakcióban)
+ *       a commit után is, így a commit előtt közbeolvasott régi érték sem marad bent.</li>
+ *   <li>Tranzakción ({@link Tx}) belül a gyorsítótár nem töltődik: ott még nem commitolt
+ *       adat is látszhat.</li>
+ *   <li>Minden érvénytelenítés növeli a generációszámot; egy olvasás eredménye csak akkor
+ *       kerül be, ha közben nem volt érvénytelenítés (nincs elavult visszaírás).</li>
+ * </ul>
+ *
+ * Szálbiztos.
+ *
+ * @param <T> A tárolt modell típusa.
+ */
+public final class EntityCache<T> {
+
+    /**
+     * Megfigyelési adatok.
+     *
+     * @param hits      Találatok száma.
+     * @param misses    Tévesztések (adatbázis olvasások) száma.
+     * @param evictions LRU miatt kiürített bejegyzések száma.
+     * @param size      Jelenlegi bejegyzésszám.
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+
+        /**
+         * @return Találati arány (0..1); ha még nem volt kérés, 0.
+         */
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+
+    private final UnaryOperator<T> copier;
+    private final LinkedHashMap<Integer, T> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long generation = 0; // a this monitorja védi
+
+    /**
+     * @param capacity A tárolt bejegyzések maximális száma.
+     * @param copier   Másolatot készít egy példányról (tároláskor és kiadáskor is).
+     */
+    public EntityCache(int capacity, UnaryOperator<T> copier) {
+        this.copier = copier;
+        // accessOrder=true: a legrégebben HASZNÁLT elem kerül ki először (LRU)
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                if (size() > capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * A gyorsítótárazott példány másolata, vagy tévesztés esetén a loader eredménye
+     * (amelyet, ha lehet, el is tárol).
+     *
+     * @param id     Az entitás ID-ja.
+     * @param loader Adatbázis olvasás (null, ha nincs ilyen sor; ez nem kerül tárolásra).
+     * @return A példány (másolat), vagy null.
+     */
+    public T get(int id, IntFunction<T> loader) {
+        long gen;
+        synchronized (this) {
+            T cached = entries.get(id);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return copier.apply(cached);
+            }
+            gen = generation;
+        }
+
+        misses.incrementAndGet();
+        T loaded = loader.apply(id);
+        if (loaded == null || Tx.active()) {
+            return loaded;
+        }
+
+        T stored = copier.apply(loaded);
+        synchronized (this) {
+            if (generation == gen) {
+                entries.put(id, stored);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Egy bejegyzés érvénytelenítése írás után. Tranzakcióban a commit után újra lefut.
+     *
+     * @param id Az entitás ID-ja.
+     */
+    public void invalidate(int id) {
+        remove(id);
+        if (Tx.active()) {
+            Tx.afterCommit(() -> remove(id));
+        }
+    }
+
+    /**
+     * Minden olyan bejegyzés érvénytelenítése, amelyre a feltétel teljesül
+     * (pl. kaszkád jellegű változásnál). Tranzakcióban a commit után újra lefut.
+     *
+     * @param condition A feltétel a tárolt példányra.
+     */
+    public void invalidateIf(Predicate<T> condition) {
+        removeIf(condition);
+        if (Tx.active()) {
+            Tx.afterCommit(() -> removeIf(condition));
+        }
+    }
+
+    /**
+     * @return A számlálók aktuális értéke.
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), entries.size());
+    }
+
+    private synchronized void remove(int id) {
+        generation++;
+        entries.remove(id);
+    }
+
+    private synchronized void removeIf(Predicate<T> condition) {
+        generation++;
+        entries.values().removeIf(condition);
+    }
+}
@@ -0,0 +1,36 @@
+package hu.carenda.app.repository;
+
+/**
+ * Segédfüggvények az FTS5 (trigram) keresőindexek lekérdezéséhez.
+ *
+ * A trigram tokenizáló legalább 3 karakteres kifejezésre ad találatot;
+ * rövidebb keresésnél a DAO-k a korábbi LIKE-os lekérdezést használják.
+ */
+final class FullTextSearch {
+
+    /** A trigram index által kezelt legrövidebb keresőkifejezés hossza. */
+    static final int MIN_LENGTH = 3;
+
+    private FullTextSearch() {
+    }
+
+    /**
+     * @param q A felhasználó által beírt keresőszöveg.
+     * @return true, ha a kifejezés elég hosszú az FTS indexhez.
+     */
+    static boolean usable(String q) {
+        return q != null && q.trim().length() >= MIN_LENGTH;
+    }
+
+    /**
+     * A keresőszöveget egyetlen FTS5 kifejezéssé (idézőjeles frázissá) alakítja,
+     * így a felhasználó által beírt speciális karakterek (", *, AND, OR, -)
+     * nem értelmeződnek lekérdezési szintaxisként.
+     *
+     * @param q A keresőszöveg.
+     * @return A MATCH operátornak átadható kifejezés.
+     */
+    static String phrase(String q) {
+        return "\"" + q.trim().replace("\"", "\"\"") + "\"";
+    }
+}
@@ -1,7 +1,13 @@
 package hu.carenda.app.repository;
 
 import hu.carenda.app.db.Database;
+import hu.carenda.app.events.DomainEvent.JobCardChanged;
+import hu.carenda.app.db.Tx;
+import hu.carenda.app.model.JobCardRow;
 import hu.carenda.app.model.ServiceJobCard;
+import hu.carenda.app.model.ServiceJobCardPart;
+import hu.carenda.app.model.ServiceJobCardWorkDesc;
+import hu.carenda.app.repository.ChangeTracker.Dataset;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -9,12 +15,40 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.time.LocalDate;
 import java.time.Year;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ServiceJobCardDao {
 
+    private final ServiceJobCardWorkDescDao workDescDao = new ServiceJobCardWorkDescDao();
+    private final ServiceJobCardPartDao partDao = new ServiceJobCardPartDao();
+
+    /**
+     * A lapozott munkalaplista rendezése. Egyben a keyset lapozás kulcsa is:
+     * a következő lap az előző lap utolsó sora UTÁN folytatódik (OFFSET nélkül),
+     * így a lekérdezés ideje nem nő a lapszámmal.
+     */
+    public enum JobCardOrder {
+        ID_ASC("s.id > ?", "s.id ASC"),
+        ID_DESC("s.id < ?", "s.id DESC"),
+        CREATED_ASC("(s.created_at, s.id) > (?, ?)", "s.created_at ASC, s.id ASC"),
+        CREATED_DESC("(s.created_at, s.id) < (?, ?)", "s.created_at DESC, s.id DESC");
+
+        private final String afterPredicate;
+        private final String orderBy;
+
+        JobCardOrder(String afterPredicate, String orderBy) {
+            this.afterPredicate = afterPredicate;
+            this.orderBy = orderBy;
+        }
+
+        private boolean byCreatedAt() {
+            return this == CREATED_ASC || this == CREATED_DESC;
+        }
+    }
+
     // --- Egységesített segédfüggvények a NULL kezelésre ---
 
     /**
@@ -43,31 +77,39 @@ public class ServiceJobCardDao {
 
     // --- DAO Metódusok ---
 
+    /**
+     * Integer oszlop olvasása, NULL esetén null.
+     * (Az rs.getObject(..., Integer.class) az sqlite-jdbc-ben NULL-ra kivételt dob.)
+     */
+    private static Integer getIntOrNull(ResultSet rs, String column) throws SQLException {
+        int v = rs.getInt(column);
+        return rs.wasNull() ? null : v;
+    }
+
     /**
      * Eredményhalmaz -> modell
-     * (rs.getObject(..., Integer.class) helyes, mert null-t ad vissza DB NULL esetén)
      */
     private ServiceJobCard map(ResultSet rs) throws SQLException {
         ServiceJobCard s = new ServiceJobCard();
 
-        s.setId(rs.getObject("id", Integer.class));
+        s.setId(getIntOrNull(rs, "id"));
         s.setJobcard_no(rs.getString("jobcard_no"));
-        s.setAppointment_id(rs.getObject("appointment_id", Integer.class));
-        s.setVehicle_id(rs.getObject("vehicle_id", Integer.class));
-        s.setCustomer_id(rs.getObject("customer_id", Integer.class));
+        s.setAppointment_id(getIntOrNull(rs, "appointment_id"));
+        s.setVehicle_id(getIntOrNull(rs, "vehicle_id"));
+        s.setCustomer_id(getIntOrNull(rs, "customer_id"));
         s.setFault_desc(rs.getString("fault_desc"));
         s.setRepair_note(rs.getString("repair_note"));
         s.setDiagnosis(rs.getString("diagnosis"));
         s.setInternal_note(rs.getString("internal_note"));
         s.setStatus(rs.getString("status"));
-        s.setAssignee_user_id(rs.getObject("assignee_user_id", Integer.class));
+        s.setAssignee_user_id(getIntOrNull(rs, "assignee_user_id"));
         s.setCreated_at(rs.getString("created_at"));
         s.setUpdated_at(rs.getString("updated_at"));
         s.setFinished_at(rs.getString("finished_at"));
-        s.setOdometer_km(rs.getObject("odometer_km", Integer.class));
-        s.setFuel_level_eighths(rs.getObject("fuel_level_eighths", Integer.class));
+        s.setOdometer_km(getIntOrNull(rs, "odometer_km"));
+        s.setFuel_level_eighths(getIntOrNull(rs, "fuel_level_eighths"));
         s.setCurrency_code(rs.getString("currency_code"));
-        s.setAdvance_cents(rs.getObject("advance_cents", Integer.class));
+        s.setAdvance_cents(getIntOrNull(rs, "advance_cents"));
 
         return s;
     }
@@ -85,23 +127,25 @@ public class ServiceJobCardDao {
     }
 
     /**
-     * Munkalap végösszegek lekérése (view_sjc_totals nézetből).
+     * Munkalap végösszegek lekérése a triggerek által karbantartott
+     * servicejobcard_totals táblából (elsődleges kulcsos keresés, nincs összegzés).
      * @param sjcId
      * @return 
      */
     public TotalsRow fetchTotals(int sjcId) {
         String sql = """
             SELECT sjc_id,
-                   subtotal_net_cents,
-                   vat_cents,
-                   total_gross_cents,
+                   work_net_cents + parts_net_cents AS subtotal_net_cents,
+                   work_vat_cents + parts_vat_cents AS vat_cents,
+                   work_net_cents + parts_net_cents + work_vat_cents + parts_vat_cents AS total_gross_cents,
                    advance_cents,
-                   amount_due_cents
-              FROM view_sjc_totals
+                   work_net_cents + parts_net_cents + work_vat_cents + parts_vat_cents
+                     - IFNULL(advance_cents, 0) AS amount_due_cents
+              FROM servicejobcard_totals
              WHERE sjc_id = ?
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, sjcId);
@@ -129,6 +173,47 @@ public class ServiceJobCardDao {
         return null;
     }
 
+    /**
+     * A servicejobcard_totals tábla teljes újraszámolása a tételsorokból, egy tranzakcióban.
+     * Normál működésben a triggerek naprakészen tartják; ez javításra való
+     * (pl. kézi adatbázis-módosítás után). Parancssorból: {@code --rebuild-totals}.
+     * @return Az újraszámolt munkalapok száma.
+     */
+    public int rebuildTotals() {
+        String sql = """
+            INSERT INTO servicejobcard_totals(sjc_id, work_net_cents, work_vat_cents,
+                                              parts_net_cents, parts_vat_cents, advance_cents)
+            SELECT s.id,
+                   (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents) AS INTEGER)), 0)
+                      FROM servicejobcard_workdesc WHERE sjc_id = s.id),
+                   (SELECT IFNULL(SUM(CAST(ROUND(hours * rate_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                      FROM servicejobcard_workdesc WHERE sjc_id = s.id),
+                   (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents) AS INTEGER)), 0)
+                      FROM servicejobcard_part WHERE sjc_id = s.id),
+                   (SELECT IFNULL(SUM(CAST(ROUND(quantity * unit_price_cents * vat_percent / 100.0) AS INTEGER)), 0)
+                      FROM servicejobcard_part WHERE sjc_id = s.id),
+                   s.advance_cents
+              FROM servicejobcard s
+            """;
+
+        try (Connection c = Database.write()) {
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) {
+                st.executeUpdate("DELETE FROM servicejobcard_totals");
+                int n = st.executeUpdate(sql);
+                c.commit();
+                return n;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.rebuildTotals", e);
+        }
+    }
+
     /**
      * Összes munkalap lekérése (JOIN nélkül).
      * @return 
@@ -143,7 +228,7 @@ public class ServiceJobCardDao {
              ORDER BY id
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              Statement st = c.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
 
@@ -158,50 +243,207 @@ public class ServiceJobCardDao {
     }
 
     /**
-     * Összes munkalap lekérése, ügyfél és jármű adatokkal JOIN-olva.
-     * @return 
+     * Egyetlen listasor ID alapján, a listanézet JOIN-jaival (célzott frissítéshez).
+     * @param id
+     * @return A sor, vagy null, ha már nem létezik.
      */
-    public List<ServiceJobCard> findAllWithOwnerAndVehicleData() {
+    public JobCardRow findRowById(int id) {
         String sql = """
-            SELECT s.id AS id, jobcard_no, appointment_id, vehicle_id, s.customer_id AS customer_id,
-                   fault_desc, repair_note, diagnosis, internal_note, status,
-                   assignee_user_id, created_at, updated_at, finished_at,
-                   odometer_km, fuel_level_eighths, currency_code, advance_cents, 
-                   c.name AS owner_name,
+            SELECT s.id, s.jobcard_no, s.customer_id, s.vehicle_id, s.status, s.created_at,
+                   c.name  AS owner_name,
                    v.plate AS vehicle_plate,
                    v.brand AS vehicle_brand,
                    v.model AS vehicle_model
               FROM servicejobcard s
               JOIN customers c ON c.id = s.customer_id
               LEFT JOIN vehicles v ON v.id = s.vehicle_id
-             ORDER BY id
+             WHERE s.id=?
             """;
-        try (Connection c = Database.get();
-             Statement st = c.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
+        try (Connection c = Database.read();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.findRowById", e);
+        }
+    }
 
-            List<ServiceJobCard> out = new ArrayList<>();
-            while (rs.next()) {
-                ServiceJobCard s = map(rs);
-                s.setOwnerName(rs.getString("owner_name"));
-                s.setPlate(rs.getString("vehicle_plate"));
-                s.setBrand(rs.getString("vehicle_brand"));
-                s.setModel(rs.getString("vehicle_model"));
+    /**
+     * Egy lap munkalap a listanézethez (ügyfél és jármű adatokkal JOIN-olva), keyset lapozással.
+     * A (created_at, id) szerinti rendezést az idx_sjc_created index szolgálja ki.
+     *
+     * @param order A rendezés (és a lapozás kulcsa).
+     * @param after Az előző lap utolsó sora, vagy null az első laphoz.
+     * @param limit A lap mérete.
+     * @return Legfeljebb limit munkalap; ha kevesebb, elértük a lista végét.
+     */
+    public List<JobCardRow> findPageWithOwnerAndVehicleData(JobCardOrder order, JobCardRow after, int limit) {
+        String sql = """
+            SELECT s.id, s.jobcard_no, s.customer_id, s.vehicle_id, s.status, s.created_at,
+                   c.name  AS owner_name,
+                   v.plate AS vehicle_plate,
+                   v.brand AS vehicle_brand,
+                   v.model AS vehicle_model
+              FROM servicejobcard s
+              JOIN customers c ON c.id = s.customer_id
+              LEFT JOIN vehicles v ON v.id = s.vehicle_id
+            """
+                + (after != null ? " WHERE " + order.afterPredicate : "")
+                + " ORDER BY " + order.orderBy
+                + " LIMIT ?";
 
-                out.add(s);
+        try (Connection c = Database.read();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            int i = 1;
+            if (after != null) {
+                if (order.byCreatedAt()) {
+                    ps.setString(i++, after.createdAt());
+                }
+                ps.setInt(i++, after.id());
+            }
+            ps.setInt(i, limit);
+
+            try (var rs = ps.executeQuery()) {
+                List<JobCardRow> out = new ArrayList<>(limit);
+                while (rs.next()) {
+                    out.add(mapRow(rs));
+                }
+                return out;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.findPageWithOwnerAndVehicleData", e);
+        }
+    }
+
+    /**
+     * Munkalapok egy felvételi időszakból (pl. havi PDF exporthoz), felvétel szerint rendezve.
+     * A created_at tartományt az idx_sjc_created index szolgálja ki.
+     *
+     * @param from   Az első nap (benne van).
+     * @param to     Az utolsó nap (benne van).
+     * @param status Csak ebben az állapotban lévők, vagy null az összeshez.
+     * @return A feltételeknek megfelelő munkalapok.
+     */
+    public List<JobCardRow> findForExport(LocalDate from, LocalDate to, String status) {
+        String sql = """
+            SELECT s.id, s.jobcard_no, s.customer_id, s.vehicle_id, s.status, s.created_at,
+                   c.name  AS owner_name,
+                   v.plate AS vehicle_plate,
+                   v.brand AS vehicle_brand,
+                   v.model AS vehicle_model
+              FROM servicejobcard s
+              JOIN customers c ON c.id = s.customer_id
+              LEFT JOIN vehicles v ON v.id = s.vehicle_id
+             WHERE s.created_at >= ? AND s.created_at < ?
+               AND (? IS NULL OR s.status = ?)
+             ORDER BY s.created_at, s.id
+            """;
+
+        try (Connection c = Database.read();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            // A created_at ISO szöveg, így a napok közti tartomány szövegesen is helyes
+            ps.setString(1, from.toString());
+            ps.setString(2, to.plusDays(1).toString());
+            setStringOrNull(ps, 3, status);
+            setStringOrNull(ps, 4, status);
+
+            try (var rs = ps.executeQuery()) {
+                List<JobCardRow> out = new ArrayList<>();
+                while (rs.next()) {
+                    out.add(mapRow(rs));
+                }
+                return out;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.findForExport", e);
+        }
+    }
+
+    /**
+     * A listanézetekhez használt könnyű sor (a JOIN-olt owner_name / vehicle_* oszlopokkal).
+     */
+    private JobCardRow mapRow(ResultSet rs) throws SQLException {
+        return new JobCardRow(
+                getIntOrNull(rs, "id"),
+                rs.getString("jobcard_no"),
+                getIntOrNull(rs, "customer_id"),
+                getIntOrNull(rs, "vehicle_id"),
+                rs.getString("status"),
+                rs.getString("created_at"),
+                rs.getString("owner_name"),
+                rs.getString("vehicle_plate"),
+                rs.getString("vehicle_brand"),
+                rs.getString("vehicle_model"));
+    }
+
+    /**
+     * Egy munkalap lekérése ID alapján (minden mezővel, szerkesztéshez).
+     * @param id
+     * @return A munkalap, vagy null, ha nem létezik.
+     */
+    public ServiceJobCard findById(int id) {
+        String sql = """
+            SELECT id, jobcard_no, appointment_id, vehicle_id, customer_id,
+                   fault_desc, repair_note, diagnosis, internal_note, status,
+                   assignee_user_id, created_at, updated_at, finished_at,
+                   odometer_km, fuel_level_eighths, currency_code, advance_cents
+              FROM servicejobcard
+             WHERE id = ?
+            """;
+
+        try (Connection c = Database.read();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            ps.setInt(1, id);
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? map(rs) : null;
             }
-            return out;
         } catch (SQLException e) {
-            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.findAllWithOwnerAndVehicleData", e);
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.findById", e);
         }
     }
 
     /**
-     * Új munkalap beszúrása.
+     * Új munkalap beszúrása. Üres munkalapszám esetén a számlálóból kap egyet.
      * @param jc
      * @return Visszatér az adatbázis által generált új ID-val.
      */
     public int insert(ServiceJobCard jc) {
+        String originalNo = jc.getJobcard_no();
+        boolean saved = false;
+
+        try {
+            int newId = Tx.call(c -> {
+                int id = doInsert(c, jc);
+                ChangeTracker.markChanged(Dataset.JOBCARDS, v -> new JobCardChanged(id, v));
+                return id;
+            });
+            saved = true;
+            return newId;
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.insert", e);
+        } finally {
+            if (!saved) {
+                jc.setId(null);
+                jc.setJobcard_no(originalNo); // a visszagörgetett szám nem foglalt
+            }
+        }
+    }
+
+    /**
+     * A beszúrás a megadott kapcsolaton (a hívó tranzakciójában); az új ID-t a jc-re is beállítja.
+     * Ha nincs megadva munkalapszám, itt (ugyanabban a tranzakcióban) kap egyet a számlálóból.
+     */
+    private int doInsert(Connection c, ServiceJobCard jc) throws SQLException {
+        if (jc.getJobcard_no() == null || jc.getJobcard_no().isBlank()) {
+            int year = Year.now().getValue();
+            jc.setJobcard_no(formatJobCardNo(year, allocateJobCardNos(c, year, 1)));
+        }
+
         String sql = """
             INSERT INTO servicejobcard (
                 jobcard_no,
@@ -224,9 +466,7 @@ public class ServiceJobCardDao {
             VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
             """;
 
-        try (Connection c = Database.get();
-             PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
+        try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, jc.getJobcard_no());
             setIntOrNull(ps, 2, jc.getAppointment_id());
             setIntOrNull(ps, 3, jc.getVehicle_id());
@@ -255,9 +495,6 @@ public class ServiceJobCardDao {
                     throw new SQLException("Munkalap létrehozása sikertelen, nem kaptunk ID-t.");
                 }
             }
-
-        } catch (SQLException e) {
-            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.insert", e);
         }
     }
 
@@ -277,7 +514,7 @@ public class ServiceJobCardDao {
              LIMIT 1
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, appointmentId);
@@ -295,29 +532,32 @@ public class ServiceJobCardDao {
      * @param q
      * @return 
      */
-    public List<ServiceJobCard> searchWithOwnerAndVehicleData(String q) {
+    public List<JobCardRow> searchWithOwnerAndVehicleData(String q) {
+        boolean fts = FullTextSearch.usable(q);
         String like = "%" + q.trim().toLowerCase() + "%";
 
+        // 3+ karakternél az FTS index (relevancia szerint), egyébként LIKE
+        String filter = fts ? """
+        JOIN servicejobcard_fts f ON f.rowid = s.id
+        WHERE servicejobcard_fts MATCH ?
+        ORDER BY f.rank, s.id
+        """ : """
+        WHERE lower(s.jobcard_no)  LIKE ?
+           OR lower(v.plate)       LIKE ?
+           OR lower(v.brand)       LIKE ?
+           OR lower(v.model)       LIKE ?
+           OR lower(c.name)        LIKE ?
+        ORDER BY s.id
+        """;
+
         String sql = """
         SELECT 
             s.id                 AS id,
             s.jobcard_no         AS jobcard_no,
-            s.appointment_id     AS appointment_id,
             s.vehicle_id         AS vehicle_id,
             s.customer_id        AS customer_id,
-            s.fault_desc         AS fault_desc,
-            s.repair_note        AS repair_note,
-            s.diagnosis          AS diagnosis,
-            s.internal_note      AS internal_note,
             s.status             AS status,
-            s.assignee_user_id   AS assignee_user_id,
             s.created_at         AS created_at,
-            s.updated_at         AS updated_at,
-            s.finished_at        AS finished_at,
-            s.odometer_km        AS odometer_km,
-            s.fuel_level_eighths AS fuel_level_eighths,
-            s.currency_code      AS currency_code,
-            s.advance_cents      AS advance_cents,
             c.name               AS owner_name,
             v.plate              AS vehicle_plate,
             v.brand              AS vehicle_brand,
@@ -325,33 +565,25 @@ public class ServiceJobCardDao {
         FROM servicejobcard s
         JOIN customers c ON c.id = s.customer_id
         LEFT JOIN vehicles v ON v.id = s.vehicle_id
-        WHERE lower(s.jobcard_no)  LIKE ?
-           OR lower(v.plate)       LIKE ?
-           OR lower(v.brand)       LIKE ?
-           OR lower(v.model)       LIKE ?
-           OR lower(c.name)        LIKE ?
-        ORDER BY s.id
-        """;
+        """ + filter;
 
-        try (Connection conn = Database.get();
+        try (Connection conn = Database.read();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            ps.setString(1, like);
-            ps.setString(2, like);
-            ps.setString(3, like);
-            ps.setString(4, like);
-            ps.setString(5, like);
+            if (fts) {
+                ps.setString(1, FullTextSearch.phrase(q));
+            } else {
+                ps.setString(1, like);
+                ps.setString(2, like);
+                ps.setString(3, like);
+                ps.setString(4, like);
+                ps.setString(5, like);
+            }
 
             try (var rs = ps.executeQuery()) {
-                List<ServiceJobCard> out = new ArrayList<>();
+                List<JobCardRow> out = new ArrayList<>();
                 while (rs.next()) {
-                    ServiceJobCard s = map(rs); // alap mezők
-                    // plusz mezők
-                    s.setOwnerName(rs.getString("owner_name"));
-                    s.setPlate(rs.getString("vehicle_plate"));
-                    s.setBrand(rs.getString("vehicle_brand"));
-                    s.setModel(rs.getString("vehicle_model"));
-                    out.add(s);
+                    out.add(mapRow(rs));
                 }
                 return out;
             }
@@ -366,6 +598,15 @@ public class ServiceJobCardDao {
      * @param jc
      */
     public void update(ServiceJobCard jc) {
+        try (Connection c = Database.write()) {
+            doUpdate(c, jc);
+            ChangeTracker.markChanged(Dataset.JOBCARDS, v -> new JobCardChanged(jc.getId(), v));
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.update", e);
+        }
+    }
+
+    private void doUpdate(Connection c, ServiceJobCard jc) throws SQLException {
         String sql = """
             UPDATE servicejobcard
                SET jobcard_no = ?,
@@ -388,9 +629,7 @@ public class ServiceJobCardDao {
              WHERE id = ?
             """;
 
-        try (Connection c = Database.get();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, jc.getJobcard_no());
             setIntOrNull(ps, 2, jc.getAppointment_id());
             setIntOrNull(ps, 3, jc.getVehicle_id());
@@ -411,52 +650,101 @@ public class ServiceJobCardDao {
             setIntOrNull(ps, 18, jc.getId());
 
             ps.executeUpdate();
+        }
+    }
 
+    /**
+     * A munkalap mentése a tételeivel együtt, egyetlen tranzakcióban.
+     *
+     * A fejlécet beszúrja (ha még nincs ID-ja) vagy frissíti, majd a munkadíj és
+     * alkatrész tételeknél csak a ténylegesen változott sorokat írja ki
+     * (lásd ServiceJobCardWorkDescDao/ServiceJobCardPartDao.saveForJobCard).
+     * Hiba esetén mindent visszagörget, és a jc ID-ja is a régi marad.
+     * Ha a hívó már egy {@link Tx} hatókörben van, ahhoz csatlakozik.
+     *
+     * @param jc    A munkalap (új munkalapnál a mentés után kap ID-t).
+     * @param work  A munkadíj tételek, a kívánt sorrendben.
+     * @param parts Az alkatrész tételek, a kívánt sorrendben.
+     */
+    public void saveWithItems(ServiceJobCard jc,
+                              List<ServiceJobCardWorkDesc> work,
+                              List<ServiceJobCardPart> parts) {
+        Integer originalId = jc.getId();
+        String originalNo = jc.getJobcard_no();
+        boolean saved = false;
+
+        try {
+            Tx.run(c -> {
+                if (originalId == null) {
+                    doInsert(c, jc);
+                } else {
+                    doUpdate(c, jc);
+                }
+                workDescDao.saveForJobCard(c, jc.getId(), work);
+                partDao.saveForJobCard(c, jc.getId(), parts);
+                ChangeTracker.markChanged(Dataset.JOBCARDS, v -> new JobCardChanged(jc.getId(), v));
+            });
+            saved = true;
         } catch (SQLException e) {
-            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.update", e);
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.saveWithItems", e);
+        } finally {
+            if (!saved) {
+                // Visszagörgetve: a beszúrt ID és a kiosztott szám már nem létezik
+                jc.setId(originalId);
+                jc.setJobcard_no(originalNo);
+            }
         }
     }
 
     /**
-     * Legközelebbi elérhető jobcard_no generálása. Formátum: YYYY-000001, ...
-     * @return 
+     * Előre lefoglal egy blokknyi munkalapszámot az aktuális évre (pl. előre
+     * nyomtatott lapokhoz vagy importhoz). A lefoglalt számokat más már nem kapja meg.
+     * Formátum: YYYY-000001, ...
+     * @param count A lefoglalandó számok darabszáma (legalább 1).
+     * @return A lefoglalt számok, növekvő sorrendben.
      */
-    public String generateNextJobCardNo() {
-        int currentYear = Year.now().getValue();
+    public List<String> reserveJobCardNos(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Legalább egy számot kell lefoglalni: " + count);
+        }
+        int year = Year.now().getValue();
 
+        try {
+            int last = Tx.call(c -> allocateJobCardNos(c, year, count));
+            List<String> out = new ArrayList<>(count);
+            for (int no = last - count + 1; no <= last; no++) {
+                out.add(formatJobCardNo(year, no));
+            }
+            return out;
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.reserveJobCardNos", e);
+        }
+    }
+
+    /**
+     * Az adott év számlálójának növelése count-tal, egyetlen atomikus UPSERT-tel.
+     * @return Az utolsó kiosztott sorszám (a blokk: last - count + 1 .. last).
+     */
+    private static int allocateJobCardNos(Connection c, int year, int count) throws SQLException {
         String sql = """
-            SELECT jobcard_no
-              FROM servicejobcard
-             WHERE jobcard_no LIKE ?
-             ORDER BY jobcard_no DESC
-             LIMIT 1
+            INSERT INTO jobcard_sequence(year, last_no)
+            VALUES (?, ?)
+            ON CONFLICT(year) DO UPDATE SET last_no = last_no + excluded.last_no
+            RETURNING last_no
             """;
-
-        try (Connection c = Database.get();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-
-            ps.setString(1, currentYear + "-%");
-
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, year);
+            ps.setInt(2, count);
             try (var rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    String lastNo = rs.getString("jobcard_no"); // pl. "2025-000123"
-                    String[] parts = lastNo.split("-");
-                    int next = 1;
-                    if (parts.length == 2) {
-                        try {
-                            next = Integer.parseInt(parts[1]) + 1;
-                        } catch (NumberFormatException e) {
-                            next = 1;
-                        }
-                    }
-                    return String.format("%d-%06d", currentYear, next);
-                } else {
-                    // ebben az évben még nincs
-                    return String.format("%d-%06d", currentYear, 1);
+                if (!rs.next()) {
+                    throw new SQLException("Munkalapszám kiosztása sikertelen (" + year + ").");
                 }
+                return rs.getInt(1);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("Adatbázis hiba: ServiceJobCardDao.generateNextJobCardNo", e);
         }
     }
+
+    private static String formatJobCardNo(int year, int no) {
+        return String.format("%d-%06d", year, no);
+    }
 }
@@ -10,7 +10,10 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class ServiceJobCardPartDao {
 
@@ -28,6 +31,13 @@ public class ServiceJobCardPartDao {
         }
     }
 
+    /**
+     * Az üres (blank) szöveget null-nak tekinti, ahogy a setStringOrNull is tárolja.
+     */
+    private static String blankToNull(String value) {
+        return (value != null && !value.isBlank()) ? value : null;
+    }
+
     // --- DAO Metódusok ---
 
     private ServiceJobCardPart map(ResultSet rs) throws SQLException {
@@ -53,7 +63,7 @@ public class ServiceJobCardPartDao {
               FROM servicejobcard_part
              ORDER BY sjc_id, sort_order, id
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              Statement st = c.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
 
@@ -74,15 +84,21 @@ public class ServiceJobCardPartDao {
      * @return 
      */
     public List<ServiceJobCardPart> findByJobCard(int sjcId) {
+        try (Connection c = Database.read()) {
+            return loadByJobCard(c, sjcId);
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardPartDao.findByJobCard", e);
+        }
+    }
+
+    private List<ServiceJobCardPart> loadByJobCard(Connection c, int sjcId) throws SQLException {
         String sql = """
             SELECT id, sjc_id, sku, name, quantity, unit_price_cents, vat_percent, sort_order
               FROM servicejobcard_part
              WHERE sjc_id=?
              ORDER BY sort_order, id
             """;
-        try (Connection c = Database.get();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, sjcId);
 
             try (var rs = ps.executeQuery()) {
@@ -92,9 +108,6 @@ public class ServiceJobCardPartDao {
                 }
                 return out;
             }
-
-        } catch (SQLException e) {
-            throw new RuntimeException("Adatbázis hiba: ServiceJobCardPartDao.findByJobCard", e);
         }
     }
 
@@ -109,7 +122,7 @@ public class ServiceJobCardPartDao {
               FROM servicejobcard_part
              WHERE id=?
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, id);
@@ -149,7 +162,7 @@ public class ServiceJobCardPartDao {
             VALUES (?,?,?,?,?,?,?)
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setInt(1, sjcId);
@@ -204,7 +217,7 @@ public class ServiceJobCardPartDao {
              WHERE id=?
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             setStringOrNull(ps, 1, sku);
@@ -228,7 +241,7 @@ public class ServiceJobCardPartDao {
      */
     public void delete(int id) {
         String sql = "DELETE FROM servicejobcard_part WHERE id=?"; 
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, id);
@@ -245,7 +258,7 @@ public class ServiceJobCardPartDao {
      */
     public void deleteByJobCard(int sjcId) {
         String sql = "DELETE FROM servicejobcard_part WHERE sjc_id=?";
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, sjcId);
@@ -255,4 +268,116 @@ public class ServiceJobCardPartDao {
             throw new RuntimeException("Adatbázis hiba: ServiceJobCardPartDao.deleteByJobCard", e);
         }
     }
+
+    /**
+     * A munkalap alkatrész tételeinek összehasonlítása a tárolt sorokkal, és csak a szükséges
+     * változtatások kiírása (JDBC batch-ekben): új sorok beszúrása, módosult sorok
+     * frissítése, a listából eltávolítottak törlése. Ha egy sornak csak a helye
+     * változott, csak a sort_order-t írjuk át.
+     *
+     * A hívó tranzakciójában fut (nem commitol). A sorrend a lista sorrendje (1-től).
+     * Az új sorok ID-ja a következő betöltéskor látszik.
+     *
+     * @param c     Az író kapcsolat (nyitott tranzakcióval).
+     * @param sjcId A munkalap ID-ja.
+     * @param items A szerkesztett tételek, a kívánt sorrendben.
+     * @throws SQLException
+     */
+    void saveForJobCard(Connection c, int sjcId, List<ServiceJobCardPart> items) throws SQLException {
+        Map<Integer, ServiceJobCardPart> stored = new HashMap<>();
+        for (ServiceJobCardPart s : loadByJobCard(c, sjcId)) {
+            stored.put(s.getId(), s);
+        }
+
+        String insertSql = """
+            INSERT INTO servicejobcard_part
+                (sjc_id, sku, name, quantity, unit_price_cents, vat_percent, sort_order)
+            VALUES (?,?,?,?,?,?,?)
+            """;
+        String updateSql = """
+            UPDATE servicejobcard_part
+               SET sku=?,
+                   name=?,
+                   quantity=?,
+                   unit_price_cents=?,
+                   vat_percent=?,
+                   sort_order=?
+             WHERE id=?
+            """;
+        String sortSql = "UPDATE servicejobcard_part SET sort_order=? WHERE id=?";
+        String deleteSql = "DELETE FROM servicejobcard_part WHERE id=?";
+
+        try (PreparedStatement ins = c.prepareStatement(insertSql);
+             PreparedStatement upd = c.prepareStatement(updateSql);
+             PreparedStatement sort = c.prepareStatement(sortSql);
+             PreparedStatement del = c.prepareStatement(deleteSql)) {
+
+            try {
+                int sortOrder = 1;
+                for (ServiceJobCardPart it : items) {
+                    ServiceJobCardPart old = it.getId() != null ? stored.remove(it.getId()) : null;
+                    if (old == null) {
+                        ins.setInt(1, sjcId);
+                        setStringOrNull(ins, 2, it.getSku());
+                        ins.setString(3, it.getName());
+                        ins.setDouble(4, it.getQuantity());
+                        ins.setInt(5, it.getUnit_price_cents());
+                        ins.setInt(6, it.getVat_percent());
+                        ins.setInt(7, sortOrder);
+                        ins.addBatch();
+                    } else if (!sameContent(old, it)) {
+                        setStringOrNull(upd, 1, it.getSku());
+                        upd.setString(2, it.getName());
+                        upd.setDouble(3, it.getQuantity());
+                        upd.setInt(4, it.getUnit_price_cents());
+                        upd.setInt(5, it.getVat_percent());
+                        upd.setInt(6, sortOrder);
+                        upd.setInt(7, old.getId());
+                        upd.addBatch();
+                    } else if (old.getSort_order() != sortOrder) {
+                        sort.setInt(1, sortOrder);
+                        sort.setInt(2, old.getId());
+                        sort.addBatch();
+                    }
+                    sortOrder++;
+                }
+                for (Integer removedId : stored.keySet()) {
+                    del.setInt(1, removedId);
+                    del.addBatch();
+                }
+
+                del.executeBatch();
+                upd.executeBatch();
+                sort.executeBatch();
+                ins.executeBatch();
+            } finally {
+                clearBatches(ins, upd, sort, del);
+            }
+        }
+    }
+
+    /**
+     * A be nem küldött batch-ek eldobása, hogy hiba esetén se maradjon sor a
+     * (gyorsítótárazott) utasításokon. Egy sikertelen törlés nem takarja el az eredeti hibát.
+     */
+    private static void clearBatches(PreparedStatement... statements) {
+        for (PreparedStatement ps : statements) {
+            try {
+                ps.clearBatch();
+            } catch (SQLException ignored) {
+                // a StatementCache visszaadáskor úgyis eldobja a hibás utasítást
+            }
+        }
+    }
+
+    /**
+     * Igaz, ha a tárolt és a szerkesztett sor tartalma (a sorrendet nem számítva) azonos.
+     */
+    private static boolean sameContent(ServiceJobCardPart a, ServiceJobCardPart b) {
+        return Objects.equals(blankToNull(a.getSku()), blankToNull(b.getSku()))
+                && Objects.equals(a.getName(), b.getName())
+                && Double.compare(a.getQuantity(), b.getQuantity()) == 0
+                && a.getUnit_price_cents() == b.getUnit_price_cents()
+                && a.getVat_percent() == b.getVat_percent();
+    }
 }
@@ -9,7 +9,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class ServiceJobCardWorkDescDao {
 
@@ -35,7 +38,7 @@ public class ServiceJobCardWorkDescDao {
               FROM servicejobcard_workdesc
              ORDER BY sjc_id, sort_order, id
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              Statement st = c.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
 
@@ -56,15 +59,21 @@ public class ServiceJobCardWorkDescDao {
      * @return 
      */
     public List<ServiceJobCardWorkDesc> findByJobCard(int sjcId) {
+        try (Connection c = Database.read()) {
+            return loadByJobCard(c, sjcId);
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: ServiceJobCardWorkDescDao.findByJobCard", e);
+        }
+    }
+
+    private List<ServiceJobCardWorkDesc> loadByJobCard(Connection c, int sjcId) throws SQLException {
         String sql = """
             SELECT id, sjc_id, name, hours, rate_cents, vat_percent, sort_order
               FROM servicejobcard_workdesc
              WHERE sjc_id=?
              ORDER BY sort_order, id
             """;
-        try (Connection c = Database.get();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, sjcId);
 
             try (var rs = ps.executeQuery()) {
@@ -74,9 +83,6 @@ public class ServiceJobCardWorkDescDao {
                 }
                 return out;
             }
-
-        } catch (SQLException e) {
-            throw new RuntimeException("Adatbázis hiba: ServiceJobCardWorkDescDao.findByJobCard", e);
         }
     }
 
@@ -91,7 +97,7 @@ public class ServiceJobCardWorkDescDao {
               FROM servicejobcard_workdesc
              WHERE id=?
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, id);
@@ -129,7 +135,7 @@ public class ServiceJobCardWorkDescDao {
             VALUES (?,?,?,?,?,?)
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setInt(1, sjcId);
@@ -180,7 +186,7 @@ public class ServiceJobCardWorkDescDao {
              WHERE id=?
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setString(1, name);
@@ -203,7 +209,7 @@ public class ServiceJobCardWorkDescDao {
      */
     public void delete(int id) {
         String sql = "DELETE FROM servicejobcard_workdesc WHERE id=?";
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, id);
@@ -220,7 +226,7 @@ public class ServiceJobCardWorkDescDao {
      */
     public void deleteByJobCard(int sjcId) {
         String sql = "DELETE FROM servicejobcard_workdesc WHERE sjc_id=?";
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, sjcId);
@@ -230,4 +236,112 @@ public class ServiceJobCardWorkDescDao {
             throw new RuntimeException("Adatbázis hiba: ServiceJobCardWorkDescDao.deleteByJobCard", e);
         }
     }
+
+    /**
+     * A munkalap munkadíj tételeinek összehasonlítása a tárolt sorokkal, és csak a szükséges
+     * változtatások kiírása (JDBC batch-ekben): új sorok beszúrása, módosult sorok
+     * frissítése, a listából eltávolítottak törlése. Ha egy sornak csak a helye
+     * változott, csak a sort_order-t írjuk át.
+     *
+     * A hívó tranzakciójában fut (nem commitol). A sorrend a lista sorrendje (1-től).
+     * Az új sorok ID-ja a következő betöltéskor látszik.
+     *
+     * @param c     Az író kapcsolat (nyitott tranzakcióval).
+     * @param sjcId A munkalap ID-ja.
+     * @param items A szerkesztett tételek, a kívánt sorrendben.
+     * @throws SQLException
+     */
+    void saveForJobCard(Connection c, int sjcId, List<ServiceJobCardWorkDesc> items) throws SQLException {
+        Map<Integer, ServiceJobCardWorkDesc> stored = new HashMap<>();
+        for (ServiceJobCardWorkDesc s : loadByJobCard(c, sjcId)) {
+            stored.put(s.getId(), s);
+        }
+
+        String insertSql = """
+            INSERT INTO servicejobcard_workdesc
+                (sjc_id, name, hours, rate_cents, vat_percent, sort_order)
+            VALUES (?,?,?,?,?,?)
+            """;
+        String updateSql = """
+            UPDATE servicejobcard_workdesc
+               SET name=?,
+                   hours=?,
+                   rate_cents=?,
+                   vat_percent=?,
+                   sort_order=?
+             WHERE id=?
+            """;
+        String sortSql = "UPDATE servicejobcard_workdesc SET sort_order=? WHERE id=?";
+        String deleteSql = "DELETE FROM servicejobcard_workdesc WHERE id=?";
+
+        try (PreparedStatement ins = c.prepareStatement(insertSql);
+             PreparedStatement upd = c.prepareStatement(updateSql);
+             PreparedStatement sort = c.prepareStatement(sortSql);
+             PreparedStatement del = c.prepareStatement(deleteSql)) {
+
+            try {
+                int sortOrder = 1;
+                for (ServiceJobCardWorkDesc it : items) {
+                    ServiceJobCardWorkDesc old = it.getId() != null ? stored.remove(it.getId()) : null;
+                    if (old == null) {
+                        ins.setInt(1, sjcId);
+                        ins.setString(2, it.getName());
+                        ins.setDouble(3, it.getHours());
+                        ins.setInt(4, it.getRate_cents());
+                        ins.setInt(5, it.getVat_percent());
+                        ins.setInt(6, sortOrder);
+                        ins.addBatch();
+                    } else if (!sameContent(old, it)) {
+                        upd.setString(1, it.getName());
+                        upd.setDouble(2, it.getHours());
+                        upd.setInt(3, it.getRate_cents());
+                        upd.setInt(4, it.getVat_percent());
+                        upd.setInt(5, sortOrder);
+                        upd.setInt(6, old.getId());
+                        upd.addBatch();
+                    } else if (old.getSort_order() != sortOrder) {
+                        sort.setInt(1, sortOrder);
+                        sort.setInt(2, old.getId());
+                        sort.addBatch();
+                    }
+                    sortOrder++;
+                }
+                for (Integer removedId : stored.keySet()) {
+                    del.setInt(1, removedId);
+                    del.addBatch();
+                }
+
+                del.executeBatch();
+                upd.executeBatch();
+                sort.executeBatch();
+                ins.executeBatch();
+            } finally {
+                clearBatches(ins, upd, sort, del);
+            }
+        }
+    }
+
+    /**
+     * A be nem küldött batch-ek eldobása, hogy hiba esetén se maradjon sor a
+     * (gyorsítótárazott) utasításokon. Egy sikertelen törlés nem takarja el az eredeti hibát.
+     */
+    private static void clearBatches(PreparedStatement... statements) {
+        for (PreparedStatement ps : statements) {
+            try {
+                ps.clearBatch();
+            } catch (SQLException ignored) {
+                // a StatementCache visszaadáskor úgyis eldobja a hibás utasítást
+            }
+        }
+    }
+
+    /**
+     * Igaz, ha a tárolt és a szerkesztett sor tartalma (a sorrendet nem számítva) azonos.
+     */
+    private static boolean sameContent(ServiceJobCardWorkDesc a, ServiceJobCardWorkDesc b) {
+        return Objects.equals(a.getName(), b.getName())
+                && Double.compare(a.getHours(), b.getHours()) == 0
+                && a.getRate_cents() == b.getRate_cents()
+                && a.getVat_percent() == b.getVat_percent();
+    }
 }
@@ -2,7 +2,7 @@ package hu.carenda.app.repository;
 
 import hu.carenda.app.db.Database;
 import hu.carenda.app.model.User;
-import org.mindrot.jbcrypt.BCrypt;
+import hu.carenda.app.service.PasswordHasher;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -41,7 +41,7 @@ public class UserDao {
              WHERE username = ?
             """;
 
-        try (Connection conn = Database.get();
+        try (Connection conn = Database.read();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setString(1, username);
@@ -65,10 +65,10 @@ public class UserDao {
              WHERE id = ?
             """;
 
-        try (Connection conn = Database.get();
+        try (Connection conn = Database.write();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            String newHash = BCrypt.hashpw(newPlainPassword, BCrypt.gensalt(10));
+            String newHash = PasswordHasher.hash(newPlainPassword);
             ps.setString(1, newHash);
             ps.setInt(2, userId);
             ps.executeUpdate();
@@ -78,6 +78,28 @@ public class UserDao {
         }
     }
 
+    /**
+     * Csak a tárolt hash cseréje (pl. bejelentkezéskori újrahash-elés más költséggel).
+     * A must_change_password flag nem változik.
+     *
+     * @param userId  A felhasználó ID-ja.
+     * @param newHash Az új BCrypt hash.
+     */
+    public void updatePasswordHash(int userId, String newHash) {
+        final String sql = "UPDATE users SET password_hash = ? WHERE id = ?";
+
+        try (Connection conn = Database.write();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, newHash);
+            ps.setInt(2, userId);
+            ps.executeUpdate();
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: UserDao.updatePasswordHash", e);
+        }
+    }
+
     /**
      * Felhasználónév és jelszó együttes frissítése (BCrypt hash-el, és a must_change_password nullázásával).
      * @param userId
@@ -91,10 +113,10 @@ public class UserDao {
              WHERE id = ?
             """;
 
-        try (Connection conn = Database.get();
+        try (Connection conn = Database.write();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            String newHash = BCrypt.hashpw(newPlainPassword, BCrypt.gensalt(10));
+            String newHash = PasswordHasher.hash(newPlainPassword);
             ps.setString(1, newUsername);
             ps.setString(2, newHash);
             ps.setInt(3, userId);
@@ -118,7 +140,7 @@ public class UserDao {
 
         List<User> out = new ArrayList<>();
 
-        try (Connection conn = Database.get();
+        try (Connection conn = Database.read();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
@@ -147,10 +169,10 @@ public class UserDao {
             VALUES (?,?,?,?,1)
             """;
 
-        try (Connection conn = Database.get();
+        try (Connection conn = Database.write();
              PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-            String hash = BCrypt.hashpw(tempPlainPassword, BCrypt.gensalt(10));
+            String hash = PasswordHasher.hash(tempPlainPassword);
 
             ps.setString(1, username);
             ps.setString(2, hash);
@@ -177,7 +199,7 @@ public class UserDao {
     public void deleteUser(int userId) {
         final String sql = "DELETE FROM users WHERE id = ?";
 
-        try (Connection conn = Database.get();
+        try (Connection conn = Database.write();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, userId);
@@ -200,10 +222,10 @@ public class UserDao {
              WHERE id = ?
             """;
 
-        try (Connection conn = Database.get();
+        try (Connection conn = Database.write();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            String newHash = BCrypt.hashpw(newPlainPassword, BCrypt.gensalt(10));
+            String newHash = PasswordHasher.hash(newPlainPassword);
             ps.setString(1, newHash);
             ps.setInt(2, userId);
             ps.executeUpdate();
@@ -1,7 +1,11 @@
 package hu.carenda.app.repository;
 
 import hu.carenda.app.db.Database;
+import hu.carenda.app.events.DomainEvent.VehicleChanged;
+import hu.carenda.app.events.DomainEvent.VehicleDeleted;
 import hu.carenda.app.model.Vehicle;
+import hu.carenda.app.model.VehicleRow;
+import hu.carenda.app.repository.ChangeTracker.Dataset;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -14,6 +18,25 @@ import java.util.List;
 
 public class VehicleDao {
 
+    /** findById() gyorsítótára; közös az összes példány között. */
+    private static final EntityCache<Vehicle> CACHE = new EntityCache<>(500,
+            v -> new Vehicle(v.getId(), v.getPlate(), v.getVin(), v.getEngine_no(), v.getBrand(), v.getModel(),
+                    v.getYear(), v.getFuel_type(), v.getOwnerId(), v.getOwnerName()));
+
+    /**
+     * @return A findById() gyorsítótár számlálói (találati arány megfigyeléséhez).
+     */
+    public static EntityCache.Stats cacheStats() {
+        return CACHE.stats();
+    }
+
+    /**
+     * Az ügyfél törlésekor a járművei tulajdonosa NULL-ra vált (FK): ezeket ki kell venni a gyorsítótárból.
+     */
+    static void invalidateOwner(int customerId) {
+        CACHE.invalidateIf(v -> v.getOwnerId() != null && v.getOwnerId() == customerId);
+    }
+
     // --- Segédfüggvények a NULL kezelés egységesítésére ---
 
     /**
@@ -54,6 +77,23 @@ public class VehicleDao {
         return v;
     }
 
+    /**
+     * A listanézetekhez használt könnyű sor (a JOIN-olt owner_name oszloppal).
+     */
+    private VehicleRow mapRow(ResultSet rs) throws SQLException {
+        return new VehicleRow(
+                rs.getInt("id"),
+                rs.getString("plate"),
+                rs.getString("vin"),
+                rs.getString("engine_no"),
+                rs.getString("brand"),
+                rs.getString("model"),
+                rs.getInt("year"),
+                rs.getString("fuel_type"),
+                rs.getInt("customer_id"),
+                rs.getString("owner_name"));
+    }
+
     public List<Vehicle> findAll() {
         String sql = """
             SELECT id, plate, vin, engine_no, brand, model, year, fuel_type, customer_id
@@ -61,7 +101,7 @@ public class VehicleDao {
              ORDER BY plate
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              Statement st = c.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             List<Vehicle> out = new ArrayList<>();
@@ -78,7 +118,7 @@ public class VehicleDao {
      * A controller ezt hívja – itt egyszerűen ugyanazt adjuk vissza.
      * @return 
      */
-    public List<Vehicle> findAllWithOwner() {
+    public List<VehicleRow> findAllWithOwner() {
         String sql = """
             SELECT v.id, v.plate, v.vin, v.engine_no, v.brand, v.model,
                    v.year, v.fuel_type, v.customer_id,
@@ -87,14 +127,12 @@ public class VehicleDao {
               JOIN customers c ON c.id = v.customer_id
              ORDER BY v.plate
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
-            List<Vehicle> out = new ArrayList<>();
+            List<VehicleRow> out = new ArrayList<>();
             while (rs.next()) {
-                Vehicle v = map(rs);
-                v.setOwnerName(rs.getString("owner_name"));
-                out.add(v);
+                out.add(mapRow(rs));
             }
             return out;
         } catch (SQLException e) {
@@ -102,14 +140,49 @@ public class VehicleDao {
         }
     }
 
+    /**
+     * Egyetlen listasor ID alapján, a findAllWithOwner() JOIN-jával (a listanézet célzott frissítéséhez).
+     * @param id
+     * @return A sor, vagy null, ha már nem létezik (vagy nincs tulajdonosa, így a listában sem szerepel).
+     */
+    public VehicleRow findRowWithOwner(int id) {
+        String sql = """
+            SELECT v.id, v.plate, v.vin, v.engine_no, v.brand, v.model,
+                   v.year, v.fuel_type, v.customer_id,
+                   c.name AS owner_name
+              FROM vehicles v
+              JOIN customers c ON c.id = v.customer_id
+             WHERE v.id=?
+            """;
+        try (Connection c = Database.read();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Adatbázis hiba: VehicleDao.findRowWithOwner", e);
+        }
+    }
+
     /**
      * rendszám/gyártmány vagy tulaj neve alapján keres.
      * @param q
      * @return 
      */
-    public List<Vehicle> searchWithOwner(String q) {
+    public List<VehicleRow> searchWithOwner(String q) {
+        boolean fts = FullTextSearch.usable(q);
         String like = "%" + q.trim().toLowerCase() + "%";
-        String sql = """
+        String sql = fts ? """
+            SELECT v.id, v.plate, v.vin, v.engine_no, v.brand, v.model,
+                   v.year, v.fuel_type, v.customer_id,
+                   c.name AS owner_name
+              FROM vehicles_fts f
+              JOIN vehicles v  ON v.id = f.rowid
+              JOIN customers c ON c.id = v.customer_id
+             WHERE vehicles_fts MATCH ?
+             ORDER BY f.rank, v.plate
+            """ : """
             SELECT v.id, v.plate, v.vin, v.engine_no, v.brand, v.model,
                    v.year, v.fuel_type, v.customer_id,
                    c.name AS owner_name
@@ -122,19 +195,21 @@ public class VehicleDao {
              ORDER BY v.plate
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, like);
-            ps.setString(2, like);
-            ps.setString(3, like);
-            ps.setString(4, like);
+            if (fts) {
+                ps.setString(1, FullTextSearch.phrase(q));
+            } else {
+                ps.setString(1, like);
+                ps.setString(2, like);
+                ps.setString(3, like);
+                ps.setString(4, like);
+            }
 
             try (var rs = ps.executeQuery()) {
-                List<Vehicle> out = new ArrayList<>();
+                List<VehicleRow> out = new ArrayList<>();
                 while (rs.next()) {
-                    Vehicle v = map(rs);
-                    v.setOwnerName(rs.getString("owner_name"));
-                    out.add(v);
+                    out.add(mapRow(rs));
                 }
                 return out;
             }
@@ -144,13 +219,21 @@ public class VehicleDao {
     }
 
 
+    /**
+     * Egy jármű lekérése ID alapján. Gyorsítótárazott: ismételt hívásnál nem fordul
+     * az adatbázishoz; a visszaadott példány másolat, szabadon módosítható.
+     */
     public Vehicle findById(int id) {
+        return CACHE.get(id, this::loadById);
+    }
+
+    private Vehicle loadById(int id) {
         String sql = """
             SELECT id, plate, vin, engine_no, brand, model, year, fuel_type, customer_id
               FROM vehicles
              WHERE id=?
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, id);
             try (var rs = ps.executeQuery()) {
@@ -169,7 +252,7 @@ public class VehicleDao {
              ORDER BY plate
             """;
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.read();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, customerId);
             try (var rs = ps.executeQuery()) {
@@ -189,7 +272,7 @@ public class VehicleDao {
             INSERT INTO vehicles(plate, vin, engine_no, brand, model, year, fuel_type, customer_id)
             VALUES (?,?,?,?,?,?,?,?)
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setString(1, plate);
@@ -204,7 +287,9 @@ public class VehicleDao {
             ps.executeUpdate();
             try (var keys = ps.getGeneratedKeys()) {
                 if (keys.next()) {
-                    return keys.getInt(1);
+                    int newId = keys.getInt(1);
+                    ChangeTracker.markChanged(Dataset.VEHICLES, v -> new VehicleChanged(newId, v));
+                    return newId;
                 } else {
                     throw new SQLException("Jármű létrehozása sikertelen, nem kaptunk ID-t.");
                 }
@@ -220,7 +305,7 @@ public class VehicleDao {
                SET plate=?, vin=?, engine_no=?, brand=?, model=?, year=?, fuel_type=?, customer_id=?
              WHERE id=?
             """;
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setString(1, plate);
@@ -234,6 +319,8 @@ public class VehicleDao {
             ps.setInt(9, id);
 
             ps.executeUpdate();
+            CACHE.invalidate(id);
+            ChangeTracker.markChanged(Dataset.VEHICLES, v -> new VehicleChanged(id, v));
         } catch (SQLException e) {
             throw new RuntimeException("Adatbázis hiba: VehicleDao.update", e);
         }
@@ -242,10 +329,13 @@ public class VehicleDao {
     public void delete(int id) {
         String sql = "DELETE FROM vehicles WHERE id=?";
 
-        try (Connection c = Database.get();
+        try (Connection c = Database.write();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, id);
-            ps.executeUpdate();
+            if (ps.executeUpdate() > 0) { // a már nem létező sor törlése nem változás
+                CACHE.invalidate(id);
+                ChangeTracker.markChanged(Dataset.VEHICLES, v -> new VehicleDeleted(id, v));
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Adatbázis hiba: VehicleDao.delete", e);
         }
@@ -0,0 +1,121 @@
+package hu.carenda.app.schedule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Memóriabeli foglalási index (sweep-line) a naptár elrendezéséhez.
+ * (A kapacitás-ellenőrzés nem ezt használja: az az AppointmentDao-ban, SQL-ben,
+ * az író tranzakción belül fut.)
+ *
+ * A foglalásokat fél-nyitott [start, end) egész intervallumként kezeli
+ * (pl. epoch perc), így az egymás után következő foglalások NEM ütköznek.
+ * Felépítése és az oszlop-kiosztás O(n log n), tetszőleges átfedési mélység mellett.
+ *
+ * @param <T> A foglalás típusa (pl. Appointment).
+ */
+public final class BookingIndex<T> {
+
+    /**
+     * Egy foglalás elhelyezése a naptárban.
+     *
+     * @param item    A foglalás.
+     * @param start   Kezdet.
+     * @param end     Vég (kizárólagos).
+     * @param column  Az oszlop indexe (0-tól) az átfedési csoporton belül.
+     * @param columns Az átfedési csoport oszlopainak száma (ennyi részre osztjuk a szélességet).
+     */
+    public record Placement<T>(T item, int start, int end, int column, int columns) {
+    }
+
+    /** Kezdet, majd vég szerint rendezett elhelyezések. */
+    private final List<Placement<T>> placements;
+
+    private BookingIndex(List<Placement<T>> placements) {
+        this.placements = Collections.unmodifiableList(placements);
+    }
+
+    /**
+     * Felépíti az indexet. A null kezdetű/végű, illetve üres (end &lt;= start)
+     * foglalásokat kihagyja.
+     *
+     * @param items A foglalások (tetszőleges sorrendben).
+     * @param start Kezdet kiolvasása.
+     * @param end   Vég kiolvasása.
+     * @return Az index, kiszámolt oszlop-kiosztással.
+     */
+    public static <T> BookingIndex<T> of(Collection<T> items,
+                                         Function<T, Integer> start,
+                                         Function<T, Integer> end) {
+        // 1. Érvényes intervallumok kigyűjtése és rendezése (kezdet, majd vég szerint)
+        List<Slot<T>> slots = new ArrayList<>(items.size());
+        for (T item : items) {
+            Integer s = start.apply(item);
+            Integer e = end.apply(item);
+            if (s != null && e != null && e > s) {
+                slots.add(new Slot<>(item, s, e));
+            }
+        }
+        slots.sort(Comparator.<Slot<T>>comparingInt(x -> x.start).thenComparingInt(x -> x.end));
+
+        // 2. Sweep: aktív foglalások (vég szerint min-heap) és szabad oszlopok (min-heap).
+        //    Ha az aktív halmaz kiürül, lezárul egy átfedési csoport (cluster):
+        //    annak minden tagja megkapja a csoportban használt oszlopok számát.
+        int[] column = new int[slots.size()];
+        int[] columns = new int[slots.size()];
+        PriorityQueue<int[]> active = new PriorityQueue<>(Comparator.comparingInt(a -> a[0])); // {end, col}
+        PriorityQueue<Integer> freeCols = new PriorityQueue<>();
+        int nextCol = 0;
+        int clusterStart = 0;
+
+        for (int i = 0; i < slots.size(); i++) {
+            Slot<T> cur = slots.get(i);
+
+            while (!active.isEmpty() && active.peek()[0] <= cur.start) {
+                freeCols.add(active.poll()[1]);
+            }
+            if (active.isEmpty() && i > clusterStart) {
+                Arrays.fill(columns, clusterStart, i, nextCol);
+                clusterStart = i;
+                nextCol = 0;
+                freeCols.clear();
+            }
+
+            int col = freeCols.isEmpty() ? nextCol++ : freeCols.poll();
+            column[i] = col;
+            active.add(new int[]{cur.end, col});
+        }
+        Arrays.fill(columns, clusterStart, slots.size(), nextCol);
+
+        List<Placement<T>> out = new ArrayList<>(slots.size());
+        for (int i = 0; i < slots.size(); i++) {
+            Slot<T> s = slots.get(i);
+            out.add(new Placement<>(s.item, s.start, s.end, column[i], columns[i]));
+        }
+        return new BookingIndex<>(out);
+    }
+
+    /**
+     * @return Az összes elhelyezés, kezdet szerint rendezve.
+     */
+    public List<Placement<T>> placements() {
+        return placements;
+    }
+
+    /**
+     * @return Az indexelt foglalások száma.
+     */
+    public int size() {
+        return placements.size();
+    }
+
+    /** Belső, rendezéshez használt rekord. */
+    private record Slot<T>(T item, int start, int end) {
+    }
+}
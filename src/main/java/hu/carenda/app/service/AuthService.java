@@ -3,29 +3,96 @@ package hu.carenda.app.service;
 import hu.carenda.app.db.Database;
 import hu.carenda.app.model.User;
 import hu.carenda.app.repository.UserDao;
-import org.mindrot.jbcrypt.BCrypt;
 
+import java.io.IOException;
+import java.net.InetAddress;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Authentikációs logika kezeléséért felelős service réteg.
  * Ez a réteg felel a DAO-k és az üzleti logika (pl. jelszó ellenőrzés) összekapcsolásáért.
+ *
+ * A BCrypt ellenőrzés (és az első híváskor az adatbázis inicializálása) szándékosan
+ * lassú, ezért a felület a {@link #loginAsync} változatot használja, amely egy
+ * saját, korlátos háttérszálon fut.
  */
 public class AuthService {
 
+    /**
+     * A bejelentkezések háttérszála. Egyszerre egy ellenőrzés fut, legfeljebb néhány
+     * vár; a többit elutasítja (a felület közben úgyis tiltja az újabb kattintást).
+     */
+    private static final ExecutorService LOGIN_EXECUTOR = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(4),
+            new LoginThreadFactory(),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    /** Közös a példányok között, hogy új login ablak nyitásával se lehessen megkerülni. */
+    private static final LoginRateLimiter RATE_LIMITER = new LoginRateLimiter();
+
+    /** Ennek a gépnek az azonosítója a korlátozóhoz. */
+    private static final String WORKSTATION = resolveWorkstation();
+
     private final UserDao userDao = new UserDao();
 
+    /**
+     * @return A bejelentkezés-korlátozó számlálói (megfigyeléshez).
+     */
+    public static LoginRateLimiter.Stats rateLimiterStats() {
+        return RATE_LIMITER.stats();
+    }
+
+    /**
+     * Aszinkron bejelentkezés: a {@link #login} a háttérszálon fut.
+     * Az eredmény a háttérszálon készül el, a felületet a hívónak kell a
+     * JavaFX szálra visszaváltania (Platform.runLater).
+     *
+     * @param username A felhasználónév.
+     * @param password A sima szöveges jelszó.
+     * @return A bejelentkezés eredménye; adatbázis hiba esetén kivétellel zárul.
+     */
+    public CompletableFuture<Optional<User>> loginAsync(String username, String password) {
+        return CompletableFuture.supplyAsync(() -> login(username, password), LOGIN_EXECUTOR);
+    }
+
+    /**
+     * Előkészítés a háttérben (adatbázis init, összehasonlító hash), hogy az első
+     * bejelentkezés ne ezekre várjon. A login ablak megnyitásakor érdemes hívni.
+     */
+    public void warmUpAsync() {
+        CompletableFuture.runAsync(() -> {
+            Database.init();
+            DummyHash.get();
+        }, LOGIN_EXECUTOR).exceptionally(ex -> {
+            // Nem végzetes: a login() ugyanezt megpróbálja még egyszer
+            System.err.println("[AUTH] Előkészítés sikertelen: " + ex.getMessage());
+            return null;
+        });
+    }
+
     /**
      * Megpróbál bejelentkeztetni egy felhasználót a felhasználóneve és jelszava alapján.
      *
      * @param username A felhasználó által megadott felhasználónév.
      * @param password A felhasználó által megadott (sima szöveges) jelszó.
      * @return Egy Optional User objektum, ha a bejelentkezés sikeres; egyébként Optional.empty().
+     * @throws LoginRateLimiter.TooManyAttemptsException ha túl sok volt a kísérlet (ekkor nincs jelszó ellenőrzés).
      */
     public Optional<User> login(String username, String password) {
+        // A korlát a drága BCrypt ellenőrzés (és minden adatbázis munka) előtt érvényesül
+        RATE_LIMITER.acquire(username, WORKSTATION);
+
         // Első próbálkozás: biztosítjuk, hogy az adatbázis inicializálva legyen.
         // Ez a hívás hozza létre a táblákat és az alapértelmezett admin felhasználót, ha még nem léteznek.
-        Database.get();
+        Database.init();
 
         try {
             // A tényleges login logikát egy privát metódusba szervezzük a kódduplikáció elkerülése érdekében.
@@ -33,13 +100,13 @@ public class AuthService {
 
         } catch (RuntimeException ex) {
             // Speciális eset: Ha a hiba "no such table: users", az azt jelenti,
-            // hogy az adatbázis-inicializálás valamiért nem futott le sikeresen az első .get() híváskor.
+            // hogy az adatbázis-inicializálás valamiért nem futott le sikeresen az első init() híváskor.
             // Ez egy "önjavító" mechanizmus.
             String msg = ex.getMessage();
             if (msg != null && msg.contains("no such table: users")) {
 
-                // Kényszerítjük az adatbázis újbóli inicializálását (most már biztosan létrehozza a táblát)
-                Database.get();
+                // Kényszerítjük az adatbázis újbóli ellenőrzését (most már biztosan létrehozza a táblát)
+                Database.init();
 
                 // És megpróbáljuk a bejelentkezést még egyszer.
                 return this.performLogin(username, password);
@@ -59,14 +126,69 @@ public class AuthService {
      */
     private Optional<User> performLogin(String username, String password) {
 
-        // Elegáns, funkcionális stílusú jelszó-ellenőrzés:
-        // 1. Keresd meg a felhasználót a neve alapján.
-        // 2. Ha megvan (.filter), ellenőrizd, hogy a jelszó nem null ÉS a BCrypt hash egyezik-e.
-        // 3. Ha a filter feltételei teljesülnek, visszaadja az Optional<User>-t.
-        // 4. Ha a felhasználó nincs meg, vagy a jelszó null, vagy a hash nem egyezik, a filter
-        //    Optional.empty()-t ad vissza.
+        Optional<User> user = userDao.findByUsername(username);
 
-        return userDao.findByUsername(username)
-                .filter(user -> password != null && BCrypt.checkpw(password, user.getPasswordHash()));
+        // Ismeretlen felhasználónál (vagy hiányzó jelszónál) is lefut egy ugyanolyan költségű
+        // BCrypt ellenőrzés, így a válaszidőből nem derül ki, hogy a név létezik-e.
+        String hash = user.map(User::getPasswordHash).orElseGet(DummyHash::get);
+        boolean matches = PasswordHasher.verify(password != null ? password : "", hash);
+
+        if (!matches || password == null || user.isEmpty()) {
+            return Optional.empty();
+        }
+        RATE_LIMITER.reset(username);
+        rehashIfNeeded(user.get(), password);
+        return user;
+    }
+
+    /**
+     * Ha a tárolt hash költsége kisebb az erre a gépre kalibráltnál, sikeres belépéskor
+     * (amikor a sima jelszó épp ismert) újra hash-eljük. Hiba esetén a belépés ettől még sikeres.
+     */
+    private void rehashIfNeeded(User user, String password) {
+        if (!PasswordHasher.needsRehash(user.getPasswordHash())) {
+            return;
+        }
+        try {
+            String newHash = PasswordHasher.hash(password);
+            userDao.updatePasswordHash(user.getId(), newHash);
+            user.setPasswordHash(newHash);
+        } catch (RuntimeException ex) {
+            System.err.println("[AUTH] Jelszó újrahash-elése sikertelen: " + ex.getMessage());
+        }
+    }
+
+    private static String resolveWorkstation() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException | SecurityException e) {
+            return "local";
+        }
+    }
+
+    /**
+     * Egy sehol nem használt jelszó hash-e az ismeretlen felhasználók ellenőrzéséhez.
+     * Lustán, az első igényléskor készül (a háttérszálon), az aktuális költséggel
+     * ({@link PasswordHasher#cost()}): a valódi hash-ek belépéskor erre a költségre frissülnek,
+     * így egy ismeretlen felhasználónév ellenőrzése ugyanannyi ideig tart, mint egy létezőé.
+     */
+    private static final class DummyHash {
+        private static final String VALUE = PasswordHasher.hash("carenda-dummy-password");
+
+        static String get() {
+            return VALUE;
+        }
+    }
+
+    /** Daemon szál, hogy egy félbemaradt ellenőrzés ne tartsa életben az alkalmazást. */
+    private static final class LoginThreadFactory implements ThreadFactory {
+        private final AtomicInteger seq = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "carenda-login-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
     }
 }
@@ -0,0 +1,231 @@
+package hu.carenda.app.service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bejelentkezési kísérletek korlátozása csúszó időablakkal, felhasználónévre és
+ * munkaállomásra külön-külön.
+ *
+ * Minden kulcshoz két egymást követő, rögzített hosszú ablak számlálója tartozik; a
+ * csúszó ablakbeli becslés az előző ablak arányos része + az aktuális ablak. A számlálók
+ * változtathatatlan állapotok, amelyeket CAS-szal cserélünk, így nincs zárolás.
+ *
+ * A memória korlátos: legfeljebb {@code maxKeys} kulcsot tartunk nyilván; betelt
+ * tábla esetén először a lejárt bejegyzéseket takarítjuk, és ha ez sem elég, az új
+ * kulcsok egy közös túlcsordulási számlálón osztoznak (így a korlát akkor is érvényes).
+ *
+ * Szálbiztos.
+ */
+public final class LoginRateLimiter {
+
+    /**
+     * A korlát túllépése: a kísérletet a jelszó ellenőrzése előtt elutasítjuk.
+     */
+    public static class TooManyAttemptsException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final Duration retryAfter;
+
+        public TooManyAttemptsException(Duration retryAfter) {
+            super("Túl sok bejelentkezési kísérlet. Próbálja újra "
+                    + Math.max(1, retryAfter.toSeconds()) + " másodperc múlva.");
+            this.retryAfter = retryAfter;
+        }
+
+        /** @return Legkésőbb ennyi idő múlva enged újra a korlátozó. */
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+
+    /**
+     * Megfigyelési adatok.
+     *
+     * @param allowed     Engedélyezett kísérletek száma (indulás óta).
+     * @param rejected    Elutasított kísérletek száma (indulás óta).
+     * @param trackedKeys Jelenleg nyilvántartott kulcsok száma.
+     */
+    public record Stats(long allowed, long rejected, int trackedKeys) {
+    }
+
+    /** Egy kulcs számlálói: az aktuális ablak kezdete, az előző és az aktuális ablak darabszáma. */
+    private record Window(long start, int previous, int current) {
+    }
+
+    /**
+     * Egy kísérlet elszámolásának eredménye.
+     *
+     * @param charged  A ténylegesen terhelt kulcs (betelt táblánál a túlcsordulási kulcs).
+     * @param waitNanos 0, ha engedélyezve; különben a becsült várakozási idő.
+     */
+    private record Attempt(String charged, long waitNanos) {
+    }
+
+    private static final String OVERFLOW_KEY = "*";
+
+    private final int maxPerUser;
+    private final int maxPerWorkstation;
+    private final long windowNanos;
+    private final int maxKeys;
+
+    private final ConcurrentHashMap<String, AtomicReference<Window>> windows = new ConcurrentHashMap<>();
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Alapértelmezés: felhasználónként 5, munkaállomásonként 20 kísérlet percenként.
+     */
+    public LoginRateLimiter() {
+        this(5, 20, Duration.ofMinutes(1), 10_000);
+    }
+
+    /**
+     * @param maxPerUser        Megengedett kísérletek egy felhasználónévre ablakonként.
+     * @param maxPerWorkstation Megengedett kísérletek egy munkaállomásról ablakonként.
+     * @param window            Az ablak hossza.
+     * @param maxKeys           A nyilvántartott kulcsok felső korlátja.
+     */
+    public LoginRateLimiter(int maxPerUser, int maxPerWorkstation, Duration window, int maxKeys) {
+        this.maxPerUser = maxPerUser;
+        this.maxPerWorkstation = maxPerWorkstation;
+        this.windowNanos = window.toNanos();
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Egy kísérlet engedélyezése. Mindkét kulcsot ellenőrzi, és csak akkor számol,
+     * ha mindkettő alatta van a korlátnak.
+     *
+     * @param username    A megadott felhasználónév (kis/nagybetű nem számít).
+     * @param workstation A munkaállomás azonosítója.
+     * @throws TooManyAttemptsException ha valamelyik korlát betelt.
+     */
+    public void acquire(String username, String workstation) {
+        long now = System.nanoTime();
+        String userKey = "u:" + normalize(username);
+        String wsKey = "w:" + normalize(workstation);
+
+        Attempt user = tryAcquire(userKey, maxPerUser, now);
+        if (user.waitNanos() > 0) {
+            reject(user.waitNanos());
+        }
+        Attempt ws = tryAcquire(wsKey, maxPerWorkstation, now);
+        if (ws.waitNanos() > 0) {
+            release(user.charged(), now); // a felhasználói oldalon már elszámoltuk, visszaadjuk
+            reject(ws.waitNanos());
+        }
+        allowed.increment();
+    }
+
+    /**
+     * Sikeres bejelentkezés után a felhasználónév számlálója törlődik
+     * (a munkaállomásé nem, az a gépelési hibáktól független védelem).
+     *
+     * @param username A felhasználónév.
+     */
+    public void reset(String username) {
+        windows.remove("u:" + normalize(username));
+    }
+
+    /**
+     * @return A számlálók aktuális értéke.
+     */
+    public Stats stats() {
+        return new Stats(allowed.sum(), rejected.sum(), windows.size());
+    }
+
+    /**
+     * Egy kulcs számlálójának növelése, ha a csúszó ablakbeli becslés a korlát alatt van.
+     *
+     * @return A terhelt kulcs, és 0, ha engedélyezve; különben a becsült várakozási idő nanoszekundumban.
+     */
+    private Attempt tryAcquire(String key, int limit, long now) {
+        String charged = chargedKey(key, now);
+        AtomicReference<Window> ref = windows.computeIfAbsent(charged, k -> new AtomicReference<>(new Window(now, 0, 0)));
+        while (true) {
+            Window cur = ref.get();
+            Window w = roll(cur, now);
+            long elapsed = Math.max(0, now - w.start()); // egy másik szál már későbbi időre léptethette
+            double previousWeight = 1.0 - (double) elapsed / windowNanos;
+            double estimate = w.previous() * previousWeight + w.current();
+            if (estimate + 1 > limit) {
+                // Addig kell várni, amíg az előző ablak súlya annyira csökken, hogy beférjen egy újabb
+                long wait = windowNanos - elapsed;
+                if (w.previous() > 0 && w.current() + 1 <= limit) {
+                    double needWeight = (limit - 1 - w.current()) / (double) w.previous();
+                    wait = (long) ((1.0 - needWeight) * windowNanos) - elapsed;
+                }
+                return new Attempt(charged, Math.max(1, wait));
+            }
+            if (ref.compareAndSet(cur, new Window(w.start(), w.previous(), w.current() + 1))) {
+                return new Attempt(charged, 0);
+            }
+            // Közben más is számolt: újra az aktuális állapotból
+        }
+    }
+
+    /** Egy korábban elszámolt kísérlet visszavonása (a másik kulcs elutasította). */
+    private void release(String key, long now) {
+        AtomicReference<Window> ref = windows.get(key);
+        if (ref == null) {
+            return;
+        }
+        while (true) {
+            Window cur = ref.get();
+            Window w = roll(cur, now);
+            if (w.current() == 0) {
+                return;
+            }
+            if (ref.compareAndSet(cur, new Window(w.start(), w.previous(), w.current() - 1))) {
+                return;
+            }
+        }
+    }
+
+    /** Az ablak továbbléptetése az aktuális időhöz (új objektum, a régi nem változik). */
+    private Window roll(Window w, long now) {
+        long elapsed = now - w.start();
+        if (elapsed < windowNanos) {
+            return w;
+        }
+        if (elapsed < 2 * windowNanos) {
+            return new Window(w.start() + windowNanos, w.current(), 0);
+        }
+        return new Window(now, 0, 0);
+    }
+
+    /**
+     * Az a kulcs, amelyen a kísérletet elszámoljuk: a saját, vagy ha a tábla betelt
+     * (és takarítás után sincs hely), a közös túlcsordulási kulcs.
+     */
+    private String chargedKey(String key, long now) {
+        if (windows.containsKey(key)) {
+            return key;
+        }
+        if (windows.size() >= maxKeys) {
+            evictExpired(now);
+            if (windows.size() >= maxKeys) {
+                return OVERFLOW_KEY;
+            }
+        }
+        return key;
+    }
+
+    /** A két ablaknál régebben használt kulcsok eltávolítása (ezek már nem számítanak). */
+    private void evictExpired(long now) {
+        windows.entrySet().removeIf(e -> now - e.getValue().get().start() >= 2 * windowNanos);
+    }
+
+    private void reject(long waitNanos) {
+        rejected.increment();
+        throw new TooManyAttemptsException(Duration.ofNanos(waitNanos));
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+}
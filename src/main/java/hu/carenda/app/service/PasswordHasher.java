@@ -0,0 +1,110 @@
+package hu.carenda.app.service;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * Jelszó hash-elés BCrypt-tel, a géphez igazított költséggel (cost).
+ *
+ * A költséget az első használatkor egyszer mérjük: egy alacsony költségű hash idejéből
+ * (minden +1 kétszeres idő) azt a legnagyobb költséget választjuk, amely még belefér a
+ * késleltetési keretbe, de legalább {@value #MIN_COST}-et (ennél gyengébb hash nem készül)
+ * és legfeljebb {@value #MAX_COST}-et.
+ *
+ * Beállítás (JVM rendszertulajdonságok):
+ * <ul>
+ *   <li>{@code carenda.bcrypt.budgetMs} – egy hash megengedett ideje (alapértelmezés: 250 ms),</li>
+ *   <li>{@code carenda.bcrypt.cost} – fix költség, mérés nélkül ({@value #MIN_COST}..30 közé szorítva, a jBCrypt felső korlátja).</li>
+ * </ul>
+ *
+ * Szálbiztos.
+ */
+public final class PasswordHasher {
+
+    /** A korábban fixen használt költség; ennél gyengébbet nem adunk ki. */
+    public static final int MIN_COST = 10;
+    public static final int MAX_COST = 14;
+
+    private static final long DEFAULT_BUDGET_MS = 250;
+
+    /** A mérés költsége: elég gyors ahhoz, hogy az indulást ne lassítsa érezhetően. */
+    private static final int PROBE_COST = 8;
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * @param plain A sima szöveges jelszó.
+     * @return A BCrypt hash az aktuális költséggel.
+     */
+    public static String hash(String plain) {
+        return BCrypt.hashpw(plain, BCrypt.gensalt(cost()));
+    }
+
+    /**
+     * @param plain A sima szöveges jelszó.
+     * @param hash  A tárolt hash.
+     * @return true, ha a jelszó egyezik.
+     */
+    public static boolean verify(String plain, String hash) {
+        return BCrypt.checkpw(plain, hash);
+    }
+
+    /**
+     * @param hash A tárolt hash.
+     * @return true, ha a hash költsége kisebb az aktuálisnál (vagy nem értelmezhető), tehát újra kell
+     *         hash-elni. Egy erősebb (lassabb gépen kalibrált) hash-t nem gyengítünk.
+     */
+    public static boolean needsRehash(String hash) {
+        return costOf(hash) < cost();
+    }
+
+    /**
+     * @return Az erre a gépre mért (vagy beállított) költség.
+     */
+    public static int cost() {
+        return Calibration.COST;
+    }
+
+    /**
+     * A hash-ben tárolt költség ("$2a$10$..." → 10), vagy -1, ha nem BCrypt formátumú.
+     */
+    static int costOf(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Lusta, egyszeri mérés (az első hash-eléskor, a hívó szálán). */
+    private static final class Calibration {
+        static final int COST = calibrate();
+
+        private static int calibrate() {
+            Integer fixed = Integer.getInteger("carenda.bcrypt.cost");
+            if (fixed != null) {
+                return Math.max(MIN_COST, Math.min(30, fixed));
+            }
+            long budgetMs = Long.getLong("carenda.bcrypt.budgetMs", DEFAULT_BUDGET_MS);
+
+            // Az első futás a JIT miatt lassabb: két mérésből a gyorsabbat vesszük
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < 2; i++) {
+                long start = System.nanoTime();
+                BCrypt.hashpw("calibration", BCrypt.gensalt(PROBE_COST));
+                best = Math.min(best, System.nanoTime() - start);
+            }
+
+            int cost = PROBE_COST;
+            double estimateMs = best / 1_000_000.0;
+            while (cost < MAX_COST && estimateMs * 2 <= budgetMs) {
+                cost++;
+                estimateMs *= 2;
+            }
+            return Math.max(MIN_COST, cost);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package hu.carenda.app.ui;
 
+import hu.carenda.app.db.Tx;
 import hu.carenda.app.model.Appointment;
 import hu.carenda.app.model.Customer;
 import hu.carenda.app.model.ServiceJobCard;
@@ -20,7 +21,6 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.Objects;
 
 /**
@@ -57,6 +57,9 @@ public class AppointmentFormController {
     /** Egységes formátum az LocalDateTime tárolásához és olvasásához. */
     private static final DateTimeFormatter LDT_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
 
+    /** Egyszerre ennyi munka fogadható (párhuzamos foglalások maximális száma). */
+    private static final int MAX_PARALLEL_JOBS = 2;
+
     @FXML
     public void initialize() {
         setupCustomerCombo();
@@ -265,14 +268,12 @@ public class AppointmentFormController {
                 .findFirst()
                 .ifPresent(vehicleCombo.getSelectionModel()::select);
 
-        // 3. Dátum/idő visszatöltés
-        try {
-            LocalDateTime ldt = LocalDateTime.parse(a.getStartTs(), LDT_FMT);
+        // 3. Dátum/idő visszatöltés (ha nem értelmezhető, maradnak az alapértékek)
+        LocalDateTime ldt = a.getStartDateTime();
+        if (ldt != null) {
             datePicker.setValue(ldt.toLocalDate());
             hourSpinner.getValueFactory().setValue(ldt.getHour());
             minuteSpinner.getValueFactory().setValue(ldt.getMinute());
-        } catch (DateTimeParseException | NullPointerException ignore) {
-            // ha nem sikerül parzolni, maradnak az alapértékek
         }
 
         // 4. Többi mező
@@ -307,6 +308,11 @@ public class AppointmentFormController {
                 showWarning("Érvénytelen időtartam", "Az időtartam percben egész szám legyen.");
                 return;
             }
+            if (dur <= 0 || dur > AppointmentDao.MAX_DURATION_MINUTES) {
+                showWarning("Érvénytelen időtartam",
+                        "Az időtartam 1 és " + AppointmentDao.MAX_DURATION_MINUTES + " perc között lehet.");
+                return;
+            }
 
             // --- Időpont összeállítása ---
             LocalDateTime ldt = d.atTime(hh, mm);
@@ -321,17 +327,31 @@ public class AppointmentFormController {
                 return;
             }
 
-            // --- Ügyfél, jármű mentése, frissítése ---
-            // A DAO hívások már a segédfüggvényekben vannak
-            int customerId = upsertCustomer(c, phone.getText(), email.getText());
-            int vehicleId = upsertVehicle(v, customerId, brand.getText(), model.getText());
-
-            // --- Időpont mentése - INSERT - UPDATE ---
-            boolean isNew = (editing == null) || (editing.getId() == null); 
-            if (isNew) {
-                apptDao.insert(customerId, vehicleId, when, dur, nt, st);
-            } else {
-                apptDao.update(editing.getId(), customerId, vehicleId, when, dur, nt, st);
+            // --- Ügyfél, jármű és időpont mentése egy tranzakcióban ---
+            // A kapacitást a DAO az író tranzakción belül újra ellenőrzi,
+            // így két párhuzamos mentés nem foglalhatja le ugyanazt az utolsó helyet.
+            // Ha bármelyik lépés elbukik (pl. betelt a kapacitás), az ügyfél és a jármű
+            // módosítása sem marad meg félig.
+            Integer editingId = (editing != null) ? editing.getId() : null;
+            Integer origCustomerId = c.getId();
+            Integer origVehicleId = v.getId();
+            boolean saved = false;
+            try {
+                Tx.run(conn -> {
+                    int customerId = upsertCustomer(c, phone.getText(), email.getText());
+                    int vehicleId = upsertVehicle(v, customerId, brand.getText(), model.getText());
+                    apptDao.saveWithCapacityCheck(editingId, customerId, vehicleId, when, dur, nt, st, MAX_PARALLEL_JOBS);
+                });
+                saved = true;
+            } catch (AppointmentDao.CapacityExceededException full) {
+                showCapacityWarning();
+                return;
+            } finally {
+                if (!saved) {
+                    // Visszagörgetve: az újonnan kiosztott ID-k már nem léteznek
+                    c.setId(origCustomerId);
+                    v.setId(origVehicleId);
+                }
             }
 
             // --- Ablak bezárása és sikeresség jelzése a Formnak ---
@@ -448,49 +468,30 @@ public class AppointmentFormController {
     }
 
     /**
-     * Ellenőrzi a kapacitást (max 2 átfedés) az adott napon.
+     * Ellenőrzi a kapacitást (max 2 átfedés) az adott időszakban.
+     * Gyors előzetes ellenőrzés (egy indexelt lekérdezés), hogy a felhasználó még az
+     * ügyfél/jármű mentése előtt visszajelzést kapjon; a végleges ellenőrzés a mentéssel
+     * egy tranzakcióban történik (saveWithCapacityCheck).
      * @param newStart Az új/módosított időpont kezdete.
      * @param newEnd Az új/módosított időpont vége.
      * @param editingId A szerkesztett időpont ID-ja (vagy null), hogy ne önmagával ütközzön.
      * @return true, ha van szabad kapacitás, false, ha tele van.
      */
     private boolean checkAvailability(LocalDateTime newStart, LocalDateTime newEnd, Integer editingId) {
-        String dayIso = newStart.toLocalDate().toString(); // "YYYY-MM-DD"
-        var sameDayAppointments = apptDao.findForDay(dayIso);
-
-        int overlaps = 0;
-        for (var ap : sameDayAppointments) {
-
-            // ha épp UPDATE van, ne számoljuk bele saját magát:
-            if (editingId != null && Objects.equals(ap.getId(), editingId)) { 
-                continue;
-            }
-
-            try {
-                LocalDateTime apStart = LocalDateTime.parse(ap.getStartTs(), LDT_FMT);
-                LocalDateTime apEnd = apStart.plusMinutes(ap.getDurationMinutes());
-
-                // Intervallum átfedés ellenőrzés: (apStart < newEnd) && (apEnd > newStart)
-                boolean overlap = apStart.isBefore(newEnd) && apEnd.isAfter(newStart);
-
-                if (overlap) {
-                    overlaps++;
-                }
-            } catch (DateTimeParseException e) {
-                // Hibás adat az adatbázisban, hagyjuk figyelmen kívül
-            }
-        }
-
-        // ha már kettő másik van, akkor a mostani lenne a 3. => STOP
-        if (overlaps >= 2) {
-            showWarning("Nincs szabad kapacitás",
-                    "Ebben az időszakban már van két lefoglalt munka.\n"
-                    + "Válasszon másik időpontot.");
+        // ha már kettő másik fut egyszerre, akkor a mostani lenne a 3. => STOP
+        if (apptDao.maxConcurrentBookings(newStart, newEnd, editingId) >= MAX_PARALLEL_JOBS) {
+            showCapacityWarning();
             return false;
         }
         return true;
     }
 
+    private void showCapacityWarning() {
+        showWarning("Nincs szabad kapacitás",
+                "Ebben az időszakban már van két lefoglalt munka.\n"
+                + "Válasszon másik időpontot.");
+    }
+
 
     // --- DAO Segédfüggvények (Upsert) ---
 
@@ -1,15 +1,33 @@
 package hu.carenda.app.ui;
 
+import hu.carenda.app.events.DomainEvent.AppointmentChanged;
+import hu.carenda.app.events.DomainEvent.AppointmentDeleted;
+import hu.carenda.app.events.DomainEvent.CustomerChanged;
+import hu.carenda.app.events.DomainEvent.CustomerDeleted;
+import hu.carenda.app.events.DomainEvent.JobCardChanged;
+import hu.carenda.app.events.DomainEvent.VehicleChanged;
+import hu.carenda.app.events.DomainEvent.VehicleDeleted;
+import hu.carenda.app.events.EventBus;
 import hu.carenda.app.model.Customer;
+import hu.carenda.app.model.CustomerRow;
 import hu.carenda.app.model.Vehicle;
+import hu.carenda.app.model.VehicleRow;
 import hu.carenda.app.repository.CustomerDao;
 import hu.carenda.app.repository.VehicleDao;
 import hu.carenda.app.model.Appointment;
+import hu.carenda.app.model.AppointmentRow;
+import hu.carenda.app.model.JobCardRow;
 import hu.carenda.app.model.ServiceJobCard;
 import hu.carenda.app.model.User;
 import hu.carenda.app.repository.AppointmentDao;
+import hu.carenda.app.repository.ChangeTracker.Dataset;
+import hu.carenda.app.repository.ChangeTracker.Stamp;
 import hu.carenda.app.repository.ServiceJobCardDao;
+import hu.carenda.app.repository.ServiceJobCardDao.JobCardOrder;
 
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -24,6 +42,9 @@ import javafx.stage.Window;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -41,6 +62,8 @@ public class DashboardFormController {
     @FXML
     private Tab scheduleTab; // Naptár fül
     @FXML
+    private Tab customerTab, vehicleTab, apptTab, jobCardTab;
+    @FXML
     private TabPane tabPane;
     @FXML
     private Label headerLabel;
@@ -51,57 +74,75 @@ public class DashboardFormController {
     @FXML
     private TextField customerSearch;
     @FXML
-    private TableView<Customer> customerTable;
+    private TableView<CustomerRow> customerTable;
     @FXML
-    private TableColumn<Customer, Integer> cId;
+    private TableColumn<CustomerRow, Integer> cId;
     @FXML
-    private TableColumn<Customer, String> cName, cPhone, cEmail;
+    private TableColumn<CustomerRow, String> cName, cPhone, cEmail;
 
     // Jármű fül
     @FXML
     private TextField vehicleSearch;
     @FXML
-    private TableView<Vehicle> vehicleTable;
+    private TableView<VehicleRow> vehicleTable;
     @FXML
-    private TableColumn<Vehicle, Integer> vId, vYear;
+    private TableColumn<VehicleRow, Integer> vId, vYear;
     @FXML
-    private TableColumn<Vehicle, String> vPlate, vVin, vEngine_no, vBrand, vModel, vFuel_type, vOwner;
+    private TableColumn<VehicleRow, String> vPlate, vVin, vEngine_no, vBrand, vModel, vFuel_type, vOwner;
 
     // Időpont fül
     @FXML
     private TextField apptSearch;
     @FXML
-    private TableView<Appointment> apptTable;
+    private TableView<AppointmentRow> apptTable;
     @FXML
-    private TableColumn<Appointment, Integer> aId, aDuration;
+    private TableColumn<AppointmentRow, Integer> aId, aDuration;
     @FXML
-    private TableColumn<Appointment, String> aWhen, aCustomer, aVehicle, aStatus, aNote;
+    private TableColumn<AppointmentRow, String> aWhen, aCustomer, aVehicle, aStatus, aNote;
 
     // Munkalap fül
     @FXML
     private TextField jobCardSearch;
     @FXML
-    private TableView<ServiceJobCard> jobCardTable;
+    private TableView<JobCardRow> jobCardTable;
     @FXML
-    private TableColumn<ServiceJobCard, Integer> sId;
+    private TableColumn<JobCardRow, Integer> sId;
     @FXML
-    private TableColumn<ServiceJobCard, String> sJobcardNo, sCreatedAt, sPlate, sBrand, sModel, sCustomer, sStatus;
+    private TableColumn<JobCardRow, String> sJobcardNo, sCreatedAt, sPlate, sBrand, sModel, sCustomer, sStatus;
 
     // Beágyazott Controller (schedule.fxml)
     @FXML
     private ScheduleFormController scheduleRootController;
 
     // --- DAO + Adatlisták ---
+    // (A listák könnyű, megváltoztathatatlan sorokat tartalmaznak; a property alapú
+    //  modell csak szerkesztéskor, a kijelölt sorból készül.)
 
     private final AppointmentDao apptDao = new AppointmentDao();
     private final CustomerDao customerDao = new CustomerDao();
     private final VehicleDao vehicleDao = new VehicleDao();
     private final ServiceJobCardDao sjcDao = new ServiceJobCardDao();
 
-    private final ObservableList<Appointment> appointments = FXCollections.observableArrayList();
-    private final ObservableList<Customer> customers = FXCollections.observableArrayList();
-    private final ObservableList<Vehicle> vehicles = FXCollections.observableArrayList();
-    private final ObservableList<ServiceJobCard> serviceJobCards = FXCollections.observableArrayList();
+    private final ObservableList<AppointmentRow> appointments = FXCollections.observableArrayList();
+    private final ObservableList<CustomerRow> customers = FXCollections.observableArrayList();
+    private final ObservableList<VehicleRow> vehicles = FXCollections.observableArrayList();
+    private final ObservableList<JobCardRow> serviceJobCards = FXCollections.observableArrayList();
+
+    // --- Háttérbetöltők (a DAO lekérdezések nem a JavaFX szálon futnak) ---
+
+    private TableLoader<CustomerRow> customerLoader;
+    private TableLoader<VehicleRow> vehicleLoader;
+    private TableLoader<AppointmentRow> apptLoader;
+    private TableLoader<JobCardRow> jobCardLoader;
+
+    /** A munkalaplista lapmérete (a többi lap görgetéskor töltődik). */
+    private static final int JOBCARD_PAGE_SIZE = 200;
+
+    /** A lapozott munkalaplista aktuális (szerveroldali) rendezése. */
+    private JobCardOrder jobCardOrder = JobCardOrder.ID_ASC;
+
+    /** A domain esemény feliratkozások (kijelentkezéskor megszűnnek). */
+    private final List<EventBus.Subscription> subscriptions = new ArrayList<>();
 
     /** Az aktuálisan belépett felhasználó, a LoginController állítja be. */
     private User currentUser;
@@ -124,21 +165,41 @@ public class DashboardFormController {
         setupAppointmentTable();
         setupJobCardTable();
 
+        // A JOIN-olt oszlopok (tulajdonos neve, rendszám) miatt a függőségek is számítanak.
+        // Az alapértelmezett rendezés a DAO lekérdezések ORDER BY-ja (új sor beszúrásához).
+        customerLoader = new TableLoader<>("Ügyfelek", customerTable, customers, CustomerRow::id,
+                Comparator.comparing(CustomerRow::name, Comparator.nullsFirst(Comparator.naturalOrder())),
+                Dataset.CUSTOMERS);
+        vehicleLoader = new TableLoader<>("Járművek", vehicleTable, vehicles, VehicleRow::id,
+                Comparator.comparing(VehicleRow::plate, Comparator.nullsFirst(Comparator.naturalOrder())),
+                Dataset.VEHICLES, Dataset.CUSTOMERS);
+        apptLoader = new TableLoader<>("Időpontok", apptTable, appointments, AppointmentRow::id,
+                Comparator.comparing(AppointmentRow::startTs, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                        .thenComparing(AppointmentRow::id)
+                        .reversed(),
+                Dataset.APPOINTMENTS, Dataset.CUSTOMERS, Dataset.VEHICLES);
+        jobCardLoader = new TableLoader<>("Munkalapok", jobCardTable, serviceJobCards, JobCardRow::id,
+                null, // lapozott lista: új munkalapnál újratöltés
+                Dataset.JOBCARDS, Dataset.CUSTOMERS, Dataset.VEHICLES);
+
+        // Ha egy változást nem lehetett célzottan átvezetni, a látható fül újratöltődik
+        customerLoader.setOnStale(() -> refreshTabIfShowing(customerTab));
+        vehicleLoader.setOnStale(() -> refreshTabIfShowing(vehicleTab));
+        apptLoader.setOnStale(() -> refreshTabIfShowing(apptTab));
+        jobCardLoader.setOnStale(() -> refreshTabIfShowing(jobCardTab));
+        subscribeToChanges();
+
         // Keresés Enter gombra
         customerSearch.setOnAction(e -> onCustomerSearch());
         vehicleSearch.setOnAction(e -> onVehicleSearch());
         apptSearch.setOnAction(e -> onApptSearch());
         jobCardSearch.setOnAction(e -> onJobCardSearch());
 
-        // Tab váltáskor frissítünk mindent
+        // Tab váltáskor csak a kiválasztott fület frissítjük, és csak ha változtak az adatai
         tabPane.getSelectionModel().selectedItemProperty().addListener((obs, oldTab, newTab) -> {
             if (newTab == null) return;
-            
-            hardRefreshAll();
-            
-            if (newTab == scheduleTab && scheduleRootController != null) {
-                scheduleRootController.hardRefreshSchedule();
-            }
+
+            refreshTabIfStale(newTab);
         });
 
         // Kezdeti adatbetöltés
@@ -149,10 +210,10 @@ public class DashboardFormController {
      * Beállítja az Ügyfél táblázat oszlopait.
      */
     private void setupCustomerTable() {
-        cId.setCellValueFactory(d -> d.getValue().idProperty());
-        cName.setCellValueFactory(d -> d.getValue().nameProperty());
-        cPhone.setCellValueFactory(d -> d.getValue().phoneProperty());
-        cEmail.setCellValueFactory(d -> d.getValue().emailProperty());
+        cId.setCellValueFactory(d -> new ReadOnlyObjectWrapper<>(d.getValue().id()));
+        cName.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().name()));
+        cPhone.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().phone()));
+        cEmail.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().email()));
         customerTable.setItems(customers);
     }
 
@@ -160,15 +221,15 @@ public class DashboardFormController {
      * Beállítja a Jármű táblázat oszlopait.
      */
     private void setupVehicleTable() {
-        vId.setCellValueFactory(d -> d.getValue().idProperty());
-        vPlate.setCellValueFactory(d -> d.getValue().plateProperty());
-        vVin.setCellValueFactory(d -> d.getValue().vinProperty());
-        vEngine_no.setCellValueFactory(d -> d.getValue().engine_noProperty());
-        vBrand.setCellValueFactory(d -> d.getValue().brandProperty());
-        vModel.setCellValueFactory(d -> d.getValue().modelProperty());
-        vYear.setCellValueFactory(d -> d.getValue().yearProperty());
-        vFuel_type.setCellValueFactory(d -> d.getValue().fuel_typeProperty());
-        vOwner.setCellValueFactory(d -> d.getValue().ownerNameProperty());
+        vId.setCellValueFactory(d -> new ReadOnlyObjectWrapper<>(d.getValue().id()));
+        vPlate.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().plate()));
+        vVin.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().vin()));
+        vEngine_no.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().engineNo()));
+        vBrand.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().brand()));
+        vModel.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().model()));
+        vYear.setCellValueFactory(d -> new ReadOnlyObjectWrapper<>(d.getValue().year()));
+        vFuel_type.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().fuelType()));
+        vOwner.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().ownerName()));
         vehicleTable.setItems(vehicles);
     }
 
@@ -176,13 +237,13 @@ public class DashboardFormController {
      * Beállítja az Időpont táblázat oszlopait.
      */
     private void setupAppointmentTable() {
-        aId.setCellValueFactory(d -> d.getValue().idProperty());
-        aWhen.setCellValueFactory(d -> d.getValue().startTsProperty());
-        aDuration.setCellValueFactory(d -> d.getValue().durationMinutesProperty());
-        aCustomer.setCellValueFactory(d -> d.getValue().ownerNameProperty());
-        aVehicle.setCellValueFactory(d -> d.getValue().vehiclePlateProperty());
-        aStatus.setCellValueFactory(d -> d.getValue().statusProperty());
-        aNote.setCellValueFactory(d -> d.getValue().noteProperty());
+        aId.setCellValueFactory(d -> new ReadOnlyObjectWrapper<>(d.getValue().id()));
+        aWhen.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().startTs()));
+        aDuration.setCellValueFactory(d -> new ReadOnlyObjectWrapper<>(d.getValue().durationMinutes()));
+        aCustomer.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().ownerName()));
+        aVehicle.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().vehiclePlate()));
+        aStatus.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().status()));
+        aNote.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().note()));
         apptTable.setItems(appointments);
     }
 
@@ -190,15 +251,47 @@ public class DashboardFormController {
      * Beállítja a Munkalap táblázat oszlopait.
      */
     private void setupJobCardTable() {
-        sId.setCellValueFactory(d -> d.getValue().idProperty());
-        sJobcardNo.setCellValueFactory(d -> d.getValue().jobcard_noProperty());
-        sCreatedAt.setCellValueFactory(d -> d.getValue().created_atProperty());
-        sPlate.setCellValueFactory(d -> d.getValue().plateProperty());
-        sBrand.setCellValueFactory(d -> d.getValue().brandProperty());
-        sModel.setCellValueFactory(d -> d.getValue().modelProperty());
-        sCustomer.setCellValueFactory(d -> d.getValue().ownerNameProperty());
-        sStatus.setCellValueFactory(d -> d.getValue().statusProperty());
+        sId.setCellValueFactory(d -> new ReadOnlyObjectWrapper<>(d.getValue().id()));
+        sJobcardNo.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().jobcardNo()));
+        sCreatedAt.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().createdAt()));
+        sPlate.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().plate()));
+        sBrand.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().brand()));
+        sModel.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().model()));
+        sCustomer.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().ownerName()));
+        sStatus.setCellValueFactory(d -> new ReadOnlyStringWrapper(d.getValue().status()));
         jobCardTable.setItems(serviceJobCards);
+
+        // Lapozott listánál a memóriában csak a betöltött lapok vannak, ezért a rendezést
+        // az adatbázis végzi: csak az ID és a felvétel ideje szerint lehet rendezni.
+        for (TableColumn<JobCardRow, ?> col : jobCardTable.getColumns()) {
+            col.setSortable(col == sId || col == sCreatedAt);
+        }
+        jobCardTable.setSortPolicy(tv -> {
+            if (jobCardLoader == null || !jobCardLoader.isPaged()) {
+                return TableView.DEFAULT_SORT_POLICY.call(tv); // keresési találatok: teljes lista
+            }
+            JobCardOrder order = jobCardOrderFromTable();
+            if (order != jobCardOrder) {
+                jobCardOrder = order;
+                onJobCardSearch();
+            }
+            return true;
+        });
+    }
+
+    /**
+     * A táblázat rendezési beállításából (fejlécre kattintás) a szerveroldali rendezés.
+     */
+    private JobCardOrder jobCardOrderFromTable() {
+        if (jobCardTable.getSortOrder().isEmpty()) {
+            return JobCardOrder.ID_ASC;
+        }
+        TableColumn<JobCardRow, ?> col = jobCardTable.getSortOrder().get(0);
+        boolean desc = col.getSortType() == TableColumn.SortType.DESCENDING;
+        if (col == sCreatedAt) {
+            return desc ? JobCardOrder.CREATED_DESC : JobCardOrder.CREATED_ASC;
+        }
+        return desc ? JobCardOrder.ID_DESC : JobCardOrder.ID_ASC;
     }
 
     /**
@@ -227,7 +320,7 @@ public class DashboardFormController {
     // --- Adatfrissítési Metódusok ---
 
     /**
-     * Újratölti az összes táblázat tartalmát az adatbázisból,
+     * Újratölti az összes táblázat tartalmát az adatbázisból (háttérszálon),
      * figyelembe véve az aktuális keresőmező-értékeket.
      */
     private void hardRefreshAll() {
@@ -237,20 +330,70 @@ public class DashboardFormController {
         onJobCardSearch();
     }
 
-    private void refreshCustomers() {
-        customers.setAll(customerDao.findAll());
+    /**
+     * Újratölti a fület, ha a legutóbbi betöltés óta írás történt a hozzá tartozó adatokban
+     * (ChangeTracker). Változás nélkül a fülváltás nem fut lekérdezést.
+     */
+    private void refreshTabIfStale(Tab tab) {
+        if (tab == customerTab && customerLoader.isStale()) {
+            onCustomerSearch();
+        } else if (tab == vehicleTab && vehicleLoader.isStale()) {
+            onVehicleSearch();
+        } else if (tab == apptTab && apptLoader.isStale()) {
+            onApptSearch();
+        } else if (tab == jobCardTab && jobCardLoader.isStale()) {
+            onJobCardSearch();
+        } else if (tab == scheduleTab && scheduleRootController != null) {
+            scheduleRootController.refreshIfStale();
+        }
     }
 
-    private void refreshVehicles() {
-        vehicles.setAll(vehicleDao.findAllWithOwner());
+    private void refreshTabIfShowing(Tab tab) {
+        if (tab.isSelected()) {
+            refreshTabIfStale(tab);
+        }
     }
 
-    private void refreshAppointments() {
-        appointments.setAll(apptDao.findAll());
+    private void refreshJobCards() {
+        onJobCardSearch();
     }
 
-    private void refreshJobCards() {
-        serviceJobCards.setAll(sjcDao.findAllWithOwnerAndVehicleData());
+    /**
+     * Feliratkozás a DAO-k domain eseményeire: egy mentés / törlés után csak az érintett
+     * sorok frissülnek (a saját táblában, és ahol JOIN-olva megjelennek), teljes
+     * újratöltés nélkül. A kezelők a JavaFX szálon futnak.
+     */
+    private void subscribeToChanges() {
+        subscriptions.add(EventBus.subscribe(CustomerChanged.class, Platform::runLater, e -> onCustomerChanged(e.id(), e.stamp())));
+        subscriptions.add(EventBus.subscribe(CustomerDeleted.class, Platform::runLater, e -> onCustomerChanged(e.id(), e.stamp())));
+        subscriptions.add(EventBus.subscribe(VehicleChanged.class, Platform::runLater, e -> onVehicleChanged(e.id(), e.stamp())));
+        subscriptions.add(EventBus.subscribe(VehicleDeleted.class, Platform::runLater, e -> onVehicleChanged(e.id(), e.stamp())));
+        subscriptions.add(EventBus.subscribe(AppointmentChanged.class, Platform::runLater,
+                e -> apptLoader.patchRow(e.id(), apptDao::findRowById, e.stamp())));
+        subscriptions.add(EventBus.subscribe(AppointmentDeleted.class, Platform::runLater,
+                e -> apptLoader.patchRow(e.id(), apptDao::findRowById, e.stamp())));
+        subscriptions.add(EventBus.subscribe(JobCardChanged.class, Platform::runLater,
+                e -> jobCardLoader.patchRow(e.id(), sjcDao::findRowById, e.stamp())));
+    }
+
+    /**
+     * Ügyfél mentése / törlése: a saját sora, valamint a nevét mutató jármű-, időpont-
+     * és munkalap sorok (törléskor a fetch null-t ad, így ezek kikerülnek / frissülnek).
+     */
+    private void onCustomerChanged(int id, Stamp stamp) {
+        customerLoader.patchRow(id, customerDao::findRowById, stamp);
+        vehicleLoader.patchWhere(v -> Objects.equals(v.ownerId(), id), vehicleDao::findRowWithOwner, stamp);
+        apptLoader.patchWhere(a -> Objects.equals(a.customerId(), id), apptDao::findRowById, stamp);
+        jobCardLoader.patchWhere(j -> Objects.equals(j.customerId(), id), sjcDao::findRowById, stamp);
+    }
+
+    /**
+     * Jármű mentése / törlése: a saját sora, valamint a rendszámát mutató időpont- és munkalap sorok.
+     */
+    private void onVehicleChanged(int id, Stamp stamp) {
+        vehicleLoader.patchRow(id, vehicleDao::findRowWithOwner, stamp);
+        apptLoader.patchWhere(a -> Objects.equals(a.vehicleId(), id), apptDao::findRowById, stamp);
+        jobCardLoader.patchWhere(j -> Objects.equals(j.vehicleId(), id), sjcDao::findRowById, stamp);
     }
 
     // --- Eseménykezelők (FXML) ---
@@ -260,19 +403,14 @@ public class DashboardFormController {
     @FXML
     public void onCustomerSearch() {
         String q = (customerSearch.getText() == null) ? "" : customerSearch.getText().trim();
-        customers.setAll(q.isEmpty() ? customerDao.findAll() : customerDao.search(q));
+        customerLoader.load(() -> q.isEmpty() ? customerDao.findAllRows() : customerDao.search(q), q.isEmpty());
     }
 
     @FXML
     public void onCustomerNew() {
         // JAVÍTVA: Átadjuk az 'owner' ablakot
         Window owner = customerTable.getScene().getWindow();
-        boolean saved = Forms.customer(owner, null);
-        
-        if (saved) {
-            refreshCustomers();
-            refreshVehicles(); // Járműveket is, mert lehet, hogy új tulajdonoshoz tartoznak
-        }
+        Forms.customer(owner, null); // mentéskor a táblák a CustomerChanged eseményből frissülnek
     }
 
     @FXML
@@ -285,12 +423,7 @@ public class DashboardFormController {
         
         // Átadjuk az 'owner' ablakot
         Window owner = customerTable.getScene().getWindow();
-        boolean saved = Forms.customer(owner, sel);
-        
-        if (saved) {
-            refreshCustomers();
-            refreshVehicles();
-        }
+        Forms.customer(owner, sel.toCustomer()); // a tulajdonosnév a járműveknél is frissül (esemény)
     }
 
     @FXML
@@ -303,14 +436,12 @@ public class DashboardFormController {
 
         boolean confirmed = showConfirmation(
                 "Törlés megerősítése",
-                "Biztosan törli: " + sel.getName() + "?\n(A járművei nem törlődnek, csak gazdátlanok lesznek.)"
+                "Biztosan törli: " + sel.name() + "?\n(A járművei nem törlődnek, csak gazdátlanok lesznek.)"
         );
         
         if (confirmed) {
             try {
-                customerDao.delete(sel.getId());
-                refreshCustomers();
-                refreshVehicles(); // Járműlista frissítése, mert az 'owner' név eltűnik
+                customerDao.delete(sel.id()); // a sorok a CustomerDeleted eseményből frissülnek
             } catch (Exception e) {
                 showError("Törlési hiba", "Adatbázis hiba történt: " + e.getMessage());
             }
@@ -322,18 +453,14 @@ public class DashboardFormController {
     @FXML
     public void onVehicleSearch() {
         String q = (vehicleSearch.getText() == null) ? "" : vehicleSearch.getText().trim();
-        vehicles.setAll(q.isEmpty() ? vehicleDao.findAllWithOwner() : vehicleDao.searchWithOwner(q));
+        vehicleLoader.load(() -> q.isEmpty() ? vehicleDao.findAllWithOwner() : vehicleDao.searchWithOwner(q), q.isEmpty());
     }
 
     @FXML
     public void onVehicleNew() {
         // Átadjuk az 'owner' ablakot
         Window owner = vehicleTable.getScene().getWindow();
-        boolean saved = Forms.vehicle(owner, null);
-        
-        if (saved) {
-            refreshVehicles();
-        }
+        Forms.vehicle(owner, null); // mentéskor a tábla a VehicleChanged eseményből frissül
     }
 
     @FXML
@@ -346,11 +473,7 @@ public class DashboardFormController {
         
         // Átadjuk az 'owner' ablakot
         Window owner = vehicleTable.getScene().getWindow();
-        boolean saved = Forms.vehicle(owner, sel);
-        
-        if (saved) {
-            refreshVehicles();
-        }
+        Forms.vehicle(owner, sel.toVehicle());
     }
 
     @FXML
@@ -363,13 +486,12 @@ public class DashboardFormController {
 
         boolean confirmed = showConfirmation(
                 "Törlés megerősítése",
-                "Biztosan törli a járművet: " + sel.getPlate() + "?"
+                "Biztosan törli a járművet: " + sel.plate() + "?"
         );
         
         if (confirmed) {
             try {
-                vehicleDao.delete(sel.getId());
-                refreshVehicles();
+                vehicleDao.delete(sel.id()); // a sorok a VehicleDeleted eseményből frissülnek
             } catch (Exception e) {
                 showError("Törlési hiba", "Adatbázis hiba történt: " + e.getMessage());
             }
@@ -381,7 +503,7 @@ public class DashboardFormController {
     @FXML
     public void onApptSearch() {
         String q = (apptSearch.getText() == null) ? "" : apptSearch.getText().trim();
-        appointments.setAll(q.isEmpty() ? apptDao.findAll() : apptDao.search(q));
+        apptLoader.load(() -> q.isEmpty() ? apptDao.findAll() : apptDao.search(q), q.isEmpty());
     }
 
     @FXML
@@ -394,11 +516,7 @@ public class DashboardFormController {
 
         // Átadjuk az 'owner' ablakot
         Window owner = tabPane.getScene().getWindow();
-        boolean saved = Forms.openAppointmentDialog(owner, a);
-        
-        if (saved) {
-            onApptSearch();
-        }
+        Forms.openAppointmentDialog(owner, a); // mentéskor a tábla az AppointmentChanged eseményből frissül
     }
 
     @FXML
@@ -409,23 +527,12 @@ public class DashboardFormController {
             return;
         }
 
-        // Másolat készítése szerkesztéshez
-        var editing = new Appointment();
-        editing.setId(sel.getId());
-        editing.setCustomerId(sel.getCustomerId());
-        editing.setVehicleId(sel.getVehicleId());
-        editing.setStartTs(sel.getStartTs());
-        editing.setDurationMinutes(sel.getDurationMinutes());
-        editing.setNote(sel.getNote());
-        editing.setStatus(sel.getStatus());
+        // Szerkeszthető modell készítése a kijelölt sorból
+        Appointment editing = sel.toAppointment();
 
         // Átadjuk az 'owner' ablakot
         Window owner = apptTable.getScene().getWindow();
-        boolean saved = Forms.openAppointmentDialog(owner, editing);
-        
-        if (saved) {
-            onApptSearch();
-        }
+        Forms.openAppointmentDialog(owner, editing);
     }
 
     @FXML
@@ -438,13 +545,12 @@ public class DashboardFormController {
 
         boolean confirmed = showConfirmation(
                 "Törlés megerősítése",
-                "Törlöd az időpontot: " + sel.getOwnerName() + " – " + sel.getVehiclePlate() + " (" + sel.getStartTs() + ")?"
+                "Törlöd az időpontot: " + sel.ownerName() + " – " + sel.vehiclePlate() + " (" + sel.startTs() + ")?"
         );
         
         if (confirmed) {
             try {
-                apptDao.delete(sel.getId());
-                refreshAppointments();
+                apptDao.delete(sel.id()); // a sor az AppointmentDeleted eseményből tűnik el
             } catch (Exception e) {
                 showError("Törlési hiba", "Adatbázis hiba történt: " + e.getMessage());
             }
@@ -456,7 +562,14 @@ public class DashboardFormController {
     @FXML
     public void onJobCardSearch() {
         String q = (jobCardSearch.getText() == null) ? "" : jobCardSearch.getText().trim();
-        serviceJobCards.setAll(q.isEmpty() ? sjcDao.findAllWithOwnerAndVehicleData() : sjcDao.searchWithOwnerAndVehicleData(q));
+        if (q.isEmpty()) {
+            jobCardOrder = jobCardOrderFromTable();
+            JobCardOrder order = jobCardOrder;
+            jobCardLoader.loadPaged((after, limit) -> sjcDao.findPageWithOwnerAndVehicleData(order, after, limit),
+                    JOBCARD_PAGE_SIZE);
+        } else {
+            jobCardLoader.load(() -> sjcDao.searchWithOwnerAndVehicleData(q), false);
+        }
     }
 
     @FXML
@@ -468,24 +581,28 @@ public class DashboardFormController {
         }
 
         try {
+            // A lista csak a megjelenített oszlopokat tartalmazza: a teljes munkalapot betöltjük
+            ServiceJobCard card = sjcDao.findById(sel.id());
+            if (card == null) {
+                showInfo("Nem található", "A munkalapot időközben törölték.");
+                refreshJobCards();
+                return;
+            }
+
             // Töltsük be a hozzátartozó ügyfelet és járművet
             Customer custObj = null;
             Vehicle vehObj = null;
 
-            if (sel.getCustomer_id() != null) {
-                custObj = customerDao.findById(sel.getCustomer_id());
+            if (card.getCustomer_id() != null) {
+                custObj = customerDao.findById(card.getCustomer_id());
             }
-            if (sel.getVehicle_id() != null) {
-                vehObj = vehicleDao.findById(sel.getVehicle_id());
+            if (card.getVehicle_id() != null) {
+                vehObj = vehicleDao.findById(card.getVehicle_id());
             }
             
             // Átadjuk az 'owner' ablakot, és a 'Forms' kezeli a megjelenítést
             Window owner = jobCardTable.getScene().getWindow();
-            boolean saved = Forms.serviceJobCard(owner, sel, custObj, vehObj);
-
-            if (saved) {
-                refreshJobCards();
-            }
+            Forms.serviceJobCard(owner, card, custObj, vehObj); // mentéskor a sor a JobCardChanged eseményből frissül
 
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -493,6 +610,11 @@ public class DashboardFormController {
         }
     }
 
+    @FXML
+    public void onJobCardExport() {
+        Forms.jobCardExport(jobCardTable.getScene().getWindow());
+    }
+
     // --- ADMIN ÉS RENDSZER FUNKCIÓK ---
 
     @FXML
@@ -535,6 +657,13 @@ public class DashboardFormController {
     @FXML
     public void onLogout() {
         // Kilépés helyett a Login képernyőre "visszadobás" (Scene csere)
+        // A régi nézet ne kapjon több eseményt
+        subscriptions.forEach(EventBus.Subscription::close);
+        subscriptions.clear();
+        if (scheduleRootController != null) {
+            scheduleRootController.unsubscribe();
+        }
+
         try {
             Stage stage = (Stage) tabPane.getScene().getWindow();
             
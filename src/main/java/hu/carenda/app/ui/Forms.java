@@ -138,6 +138,21 @@ public class Forms {
         );
     }
 
+    /**
+     * Megnyitja a munkalapok tömeges PDF exportjának (ZIP) ablakát.
+     *
+     * @param owner A szülő ablak.
+     */
+    public static void jobCardExport(Window owner) {
+        openModalForm(
+                owner,
+                "/hu/carenda/app/views/jobcard-export.fxml",
+                "Munkalapok exportja",
+                (JobCardExportFormController controller) -> {
+                    // Nincs átadandó állapot, az alapértékeket az initialize() állítja be
+                }
+        );
+    }
 
     // --- Privát Segédfüggvények ---
     
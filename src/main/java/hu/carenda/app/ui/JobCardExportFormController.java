@@ -0,0 +1,160 @@
+package hu.carenda.app.ui;
+
+import hu.carenda.app.model.JobCardRow;
+import hu.carenda.app.pdf.JobCardZipExporter;
+import hu.carenda.app.pdf.JobCardZipExporter.ExportResult;
+import hu.carenda.app.repository.ServiceJobCardDao;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A munkalapok tömeges PDF exportjának (ZIP) vezérlője.
+ * A lekérdezés és a renderelés háttérszálon fut, a felület közben használható
+ * marad; bezáráskor a futó export megszakad.
+ */
+public class JobCardExportFormController {
+
+    /** A státusz szűrő "nincs szűrés" eleme. */
+    private static final String ALL_STATUSES = "Mind";
+
+    @FXML private DatePicker fromDate, toDate;
+    @FXML private ComboBox<String> status;
+    @FXML private ProgressBar progressBar;
+    @FXML private Label statusLabel;
+    @FXML private Button exportButton;
+
+    private final ServiceJobCardDao jobCardDao = new ServiceJobCardDao();
+    private final JobCardZipExporter exporter = new JobCardZipExporter();
+
+    private Task<ExportResult> running;
+
+    /**
+     * FXML inicializálás: alapból az előző hónap átadott munkalapjai.
+     */
+    @FXML
+    private void initialize() {
+        LocalDate firstOfMonth = LocalDate.now().withDayOfMonth(1);
+        fromDate.setValue(firstOfMonth.minusMonths(1));
+        toDate.setValue(firstOfMonth.minusDays(1));
+
+        status.setItems(FXCollections.observableArrayList(
+                ALL_STATUSES, "OPEN", "IN_PROGRESS", "READY", "DELIVERED", "CANCELLED"
+        ));
+        status.getSelectionModel().select("DELIVERED");
+    }
+
+    /**
+     * Az "Export" gomb: cél fájl bekérése, majd az export indítása a háttérben.
+     */
+    @FXML
+    private void onExport() {
+        LocalDate from = fromDate.getValue();
+        LocalDate to = toDate.getValue();
+        if (from == null || to == null || to.isBefore(from)) {
+            showError("Validációs Hiba", "Adjon meg érvényes időszakot!");
+            return;
+        }
+        String st = status.getValue();
+        String statusFilter = (st == null || ALL_STATUSES.equals(st)) ? null : st;
+
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Munkalapok mentése (ZIP)");
+        chooser.setInitialFileName("munkalapok_" + from + "_" + to + ".zip");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("ZIP Fájlok", "*.zip"));
+        File file = chooser.showSaveDialog(exportButton.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        Task<ExportResult> task = new Task<>() {
+            @Override
+            protected ExportResult call() throws Exception {
+                updateMessage("Munkalapok lekérdezése…");
+                List<JobCardRow> cards = jobCardDao.findForExport(from, to, statusFilter);
+                if (cards.isEmpty()) {
+                    return null;
+                }
+                return exporter.export(cards, file.toPath(), (done, step) -> {
+                    updateProgress(done, 1.0);
+                    updateMessage("PDF-ek készítése: " + step);
+                });
+            }
+        };
+
+        progressBar.progressProperty().bind(task.progressProperty());
+        statusLabel.textProperty().bind(task.messageProperty());
+        exportButton.setDisable(true);
+
+        task.setOnSucceeded(e -> {
+            finish();
+            ExportResult r = task.getValue();
+            if (r == null) {
+                statusLabel.setText("A megadott feltételekkel nincs munkalap.");
+            } else {
+                statusLabel.setText(String.format("%d munkalap exportálva (%.1f mp, %.1f db/mp).",
+                        r.documents(), r.elapsed().toMillis() / 1000.0, r.documentsPerSecond()));
+            }
+        });
+        task.setOnFailed(e -> {
+            finish();
+            statusLabel.setText("");
+            Throwable ex = task.getException();
+            ex.printStackTrace();
+            showError("Export hiba", "Az export sikertelen:\n" + ex.getMessage());
+        });
+        task.setOnCancelled(e -> {
+            finish();
+            statusLabel.setText("Az export megszakítva.");
+        });
+
+        running = task;
+        // Ablak bezárásakor (X) is álljon le az export
+        exportButton.getScene().getWindow().setOnHidden(e -> cancelRunning());
+        Thread t = new Thread(task, "carenda-export");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * A "Bezár" gomb: a futó exportot megszakítja, és bezárja az ablakot.
+     */
+    @FXML
+    private void onClose() {
+        cancelRunning();
+        ((Stage) exportButton.getScene().getWindow()).close();
+    }
+
+    private void cancelRunning() {
+        if (running != null && running.isRunning()) {
+            running.cancel(); // interrupt: az exporter törli a félkész fájlt
+        }
+    }
+
+    private void finish() {
+        running = null;
+        progressBar.progressProperty().unbind();
+        statusLabel.textProperty().unbind();
+        exportButton.setDisable(false);
+    }
+
+    private void showError(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
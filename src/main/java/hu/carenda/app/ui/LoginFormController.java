@@ -3,19 +3,24 @@ package hu.carenda.app.ui;
 import hu.carenda.app.model.User;
 import hu.carenda.app.repository.UserDao;
 import hu.carenda.app.service.AuthService;
+import hu.carenda.app.service.LoginRateLimiter;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import java.io.IOException;
 import java.util.Optional;
 import java.util.Objects;
+import java.util.concurrent.CompletionException;
 
 /**
  * A bejelentkezési képernyő (login.fxml) vezérlője.
@@ -25,19 +30,54 @@ public class LoginFormController {
 
     @FXML private TextField usernameField;
     @FXML private PasswordField passwordField;
+    @FXML private Button loginButton;
+    @FXML private ProgressIndicator busyIndicator;
 
     private final AuthService authService = new AuthService();
     private final UserDao userDao = new UserDao();
 
+    /**
+     * FXML inicializálás: az adatbázis előkészítése már a háttérben elindul,
+     * amíg a felhasználó gépel.
+     */
+    @FXML
+    private void initialize() {
+        authService.warmUpAsync();
+    }
+
     /**
      * A "Bejelentkezés" gomb eseménykezelője.
+     * Az ellenőrzés a háttérben fut; addig az űrlap tiltva van, és a jelző forog.
      */
     @FXML
     private void onLogin(ActionEvent e) {
         String u = usernameField.getText();
         String p = passwordField.getText();
 
-        Optional<User> userOpt = authService.login(u, p);
+        setBusy(true);
+        authService.loginAsync(u, p)
+                .whenComplete((userOpt, ex) -> Platform.runLater(() -> {
+                    setBusy(false);
+                    if (ex != null) {
+                        Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+                        if (cause instanceof LoginRateLimiter.TooManyAttemptsException) {
+                            showError("Túl sok próbálkozás", cause.getMessage());
+                            return;
+                        }
+                        cause.printStackTrace();
+                        showError("Bejelentkezési hiba", "A bejelentkezés nem sikerült: " + cause.getMessage());
+                        return;
+                    }
+                    onLoginResult(userOpt);
+                }));
+    }
+
+    /**
+     * A bejelentkezés eredményének feldolgozása (JavaFX szálon).
+     *
+     * @param userOpt A belépett felhasználó, vagy üres, ha hibás a név/jelszó.
+     */
+    private void onLoginResult(Optional<User> userOpt) {
         if (userOpt.isEmpty()) {
             showError("Bejelentkezési hiba", "Hibás felhasználónév vagy jelszó.");
             return;
@@ -70,6 +110,13 @@ public class LoginFormController {
         }
     }
 
+    private void setBusy(boolean busy) {
+        busyIndicator.setVisible(busy);
+        loginButton.setDisable(busy);
+        usernameField.setDisable(busy);
+        passwordField.setDisable(busy);
+    }
+
     /**
      * Megnyitja a Dashboard felületet, átadja a belépett felhasználót,
      * majd bezárja a Login ablakot.
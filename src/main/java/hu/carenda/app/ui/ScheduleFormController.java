@@ -1,11 +1,20 @@
 package hu.carenda.app.ui;
 
+import hu.carenda.app.events.DomainEvent;
+import hu.carenda.app.events.DomainEvent.AppointmentChanged;
+import hu.carenda.app.events.DomainEvent.AppointmentDeleted;
+import hu.carenda.app.events.DomainEvent.CustomerChanged;
+import hu.carenda.app.events.DomainEvent.CustomerDeleted;
+import hu.carenda.app.events.DomainEvent.VehicleChanged;
+import hu.carenda.app.events.DomainEvent.VehicleDeleted;
+import hu.carenda.app.events.EventBus;
 import hu.carenda.app.model.Appointment;
-import hu.carenda.app.model.Customer;
-import hu.carenda.app.model.Vehicle;
 import hu.carenda.app.repository.AppointmentDao;
-import hu.carenda.app.repository.CustomerDao;
-import hu.carenda.app.repository.VehicleDao;
+import hu.carenda.app.repository.ChangeTracker;
+import hu.carenda.app.repository.ChangeTracker.Dataset;
+import hu.carenda.app.repository.ChangeTracker.Stamp;
+import hu.carenda.app.schedule.BookingIndex;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.control.*;
@@ -15,15 +24,16 @@ import javafx.scene.shape.Line;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.Duration;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Controller a Naptár nézet (schedule.xml) kezeléséhez.
@@ -44,15 +54,10 @@ public class ScheduleFormController {
     @FXML
     private Pane canvas; // A rajzolási terület, ahol a blokkok megjelennek
 
-    // --- DAO-k és cache-elt listák a címkékhez ---
+    // --- DAO ---
+    // (Az ügyfélnevet és a rendszámot a findBetween JOIN-olva adja vissza,
+    //  így nincs szükség a teljes ügyfél- és járműtábla betöltésére.)
     private final AppointmentDao apptDao = new AppointmentDao();
-    private final CustomerDao customerDao = new CustomerDao();
-    private final VehicleDao vehicleDao = new VehicleDao();
-
-    /** Gyorsítótár az ügyfélnevek megjelenítéséhez. */
-    private List<Customer> customers = new ArrayList<>();
-    /** Gyorsítótár a rendszámok megjelenítéséhez. */
-    private List<Vehicle> vehicles = new ArrayList<>();
 
     // --- Rács konstansok ---
     private static final int DAY_START_HOUR = 8;
@@ -60,10 +65,33 @@ public class ScheduleFormController {
     private static final double HOUR_PIXELS = 60.0;
     private static final double COL_WIDTH = 150.0;
     private static final double DAY_HEADER_OFFSET = 24.0; // Hely a nap fejlécének
+    private static final int MINUTES_PER_DAY = 24 * 60;
 
     /** Egységes formátum az LocalDateTime tárolásához és olvasásához (mint az AppointmentFormController-ben). */
     private static final DateTimeFormatter LDT_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
 
+    /** Az adathalmazok, amelyekből a naptár blokkjai (időpont, ügyfélnév, rendszám) származnak. */
+    private static final Dataset[] DEPENDS_ON = {Dataset.APPOINTMENTS, Dataset.CUSTOMERS, Dataset.VEHICLES};
+
+    /** Az eseménykezelők adatbázis olvasásai (nem a JavaFX szálon; egy szál, így sorrendben). */
+    private static final ExecutorService LOOKUP_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "carenda-schedule-lookup");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** A legutóbb kirajzolt adatok verziója (ChangeTracker). */
+    private long drawnVersion = -1;
+
+    /** A kirajzolt időszak [from, to) epoch percben, és a blokkokon látható azonosítók. */
+    private int drawnFromMin, drawnToMin;
+    private final Set<Integer> drawnAppointments = new HashSet<>();
+    private final Set<Integer> drawnCustomers = new HashSet<>();
+    private final Set<Integer> drawnVehicles = new HashSet<>();
+
+    /** A domain esemény feliratkozások (a Dashboard kijelentkezéskor megszünteti). */
+    private final List<EventBus.Subscription> subscriptions = new ArrayList<>();
+
     @FXML
     public void initialize() {
         if (dayPicker.getValue() == null) {
@@ -72,6 +100,16 @@ public class ScheduleFormController {
         // Listenerek a nézet vagy a dátum változására
         viewToggle.selectedToggleProperty().addListener((obs, o, n) -> reload());
         dayPicker.valueProperty().addListener((obs, o, n) -> reload());
+
+        // Mentés / törlés után csak akkor rajzolunk újra, ha a változás a látható időszakot érinti.
+        // Minden esemény a lookup szálon át jut a JavaFX szálra, így a commit sorrendjében dolgozzuk fel.
+        subscriptions.add(EventBus.subscribe(AppointmentChanged.class, LOOKUP_EXECUTOR, this::onAppointmentChanged));
+        subscriptions.add(EventBus.subscribe(AppointmentDeleted.class, LOOKUP_EXECUTOR,
+                e -> Platform.runLater(() -> redrawIf(drawnAppointments.contains(e.id()), e.stamp()))));
+        subscriptions.add(EventBus.subscribe(CustomerChanged.class, LOOKUP_EXECUTOR, this::onCustomerEvent));
+        subscriptions.add(EventBus.subscribe(CustomerDeleted.class, LOOKUP_EXECUTOR, this::onCustomerEvent));
+        subscriptions.add(EventBus.subscribe(VehicleChanged.class, LOOKUP_EXECUTOR, this::onVehicleEvent));
+        subscriptions.add(EventBus.subscribe(VehicleDeleted.class, LOOKUP_EXECUTOR, this::onVehicleEvent));
         
         // Kezdeti nézet betöltése
         reload();
@@ -86,6 +124,69 @@ public class ScheduleFormController {
         reload();
     }
 
+    /**
+     * Csak akkor rajzolja újra a naptárat, ha a legutóbbi kirajzolás óta
+     * változtak az időpontok (vagy a hozzájuk JOIN-olt ügyfél / jármű adatok).
+     */
+    public void refreshIfStale() {
+        if (drawnVersion != ChangeTracker.version(DEPENDS_ON)) {
+            reload();
+        }
+    }
+
+    /**
+     * Leiratkozás a domain eseményekről (a nézet lecserélésekor).
+     */
+    public void unsubscribe() {
+        subscriptions.forEach(EventBus.Subscription::close);
+        subscriptions.clear();
+    }
+
+    /**
+     * Egy időpont mentése: újrarajzolás, ha eddig is látszott, vagy ha most a látható időszakba esik.
+     * Az új kezdőidőt a lookup szálon olvassuk; a döntés a JavaFX szálon, az akkor kirajzolt állapoton születik.
+     */
+    private void onAppointmentChanged(AppointmentChanged e) {
+        Integer start;
+        try {
+            Appointment a = apptDao.findById(e.id());
+            start = (a == null) ? null : a.getStartEpochMin();
+        } catch (RuntimeException ex) {
+            // Nem nyugtázzuk: a naptár elavult marad, a következő fülváltás újrarajzolja
+            System.err.println("[UI] Naptár frissítési hiba: " + ex.getMessage());
+            return;
+        }
+        Platform.runLater(() -> redrawIf(drawnAppointments.contains(e.id())
+                || (start != null && start >= drawnFromMin && start < drawnToMin), e.stamp()));
+    }
+
+    private void onCustomerEvent(DomainEvent e) {
+        // a blokkon az ügyfél neve látszik
+        Platform.runLater(() -> redrawIf(drawnCustomers.contains(e.id()), e.stamp()));
+    }
+
+    private void onVehicleEvent(DomainEvent e) {
+        // a blokkon a rendszám látszik
+        Platform.runLater(() -> redrawIf(drawnVehicles.contains(e.id()), e.stamp()));
+    }
+
+    /**
+     * Egy (már commitolt) változás kezelése: ha a kirajzolt blokkokat érinti, újrarajzol;
+     * különben nyugtázza a verziót, így a fülváltás sem rajzol feleslegesen. Csak akkor
+     * nyugtázunk, ha a kirajzolt állapot pontosan a változás előtti verzió volt; ekkor a
+     * verzió a változás utáni érték lesz (a közben kimaradt változás így nem nyelődik el).
+     */
+    private void redrawIf(boolean affected, Stamp stamp) {
+        if (drawnVersion < 0 || drawnVersion >= stamp.after(DEPENDS_ON)) {
+            return; // még nem rajzoltunk, vagy a kirajzolás már tartalmazza a változást
+        }
+        if (affected) {
+            reload();
+        } else if (drawnVersion == stamp.before(DEPENDS_ON)) {
+            drawnVersion = stamp.after(DEPENDS_ON);
+        }
+    }
+
     /**
      * Eseménykezelő: Új időpont gomb.
      * Megnyitja az űrlapot az aktuálisan kiválasztott nap 10:00 órájára időzítve.
@@ -99,10 +200,8 @@ public class ScheduleFormController {
         a.setStatus("TERVEZETT");
 
         // JAVÍTVA: A 'Window owner' az első paraméter az egységes Forms.java miatt.
-        boolean saved = Forms.openAppointmentDialog(canvas.getScene().getWindow(), a);
-        if (saved) {
-            reload(); // Mentés után újrarajzoljuk a naptárat
-        }
+        // Mentés után az AppointmentChanged esemény rajzolja újra (ha a látható időszakba esik)
+        Forms.openAppointmentDialog(canvas.getScene().getWindow(), a);
     }
 
     /**
@@ -123,20 +222,16 @@ public class ScheduleFormController {
      */
     @FXML
     public void reload() {
-        // 1. Frissítjük a gyorsítótárakat (ügyfélnevek, rendszámok)
-        try {
-            customers = customerDao.findAll();
-            vehicles = vehicleDao.findAll();
-        } catch (Exception e) {
-            showError("Adatbázis hiba", "Nem sikerült betölteni az ügyfél vagy jármű adatokat: " + e.getMessage());
-        }
-
+        drawnVersion = ChangeTracker.version(DEPENDS_ON);
 
-        // 2. Törlünk mindent
+        // 1. Törlünk mindent
         canvas.getChildren().clear();
         timeGutter.getChildren().clear();
+        drawnAppointments.clear();
+        drawnCustomers.clear();
+        drawnVehicles.clear();
 
-        // 3. Bal oldali óracímkék kirajzolása (8:00, 9:00, ...)
+        // 2. Bal oldali óracímkék kirajzolása (8:00, 9:00, ...)
         for (int h = DAY_START_HOUR; h <= DAY_END_HOUR; h++) {
             var lbl = new Label(String.format("%02d:00", h));
             lbl.setMinHeight(HOUR_PIXELS);
@@ -146,7 +241,7 @@ public class ScheduleFormController {
             timeGutter.getChildren().add(lbl);
         }
 
-        // 4. Döntés a nézet (napi/heti) alapján
+        // 3. Döntés a nézet (napi/heti) alapján
         var selectedDay = dayPicker.getValue();
         if (dayRadio.isSelected()) {
             drawDay(selectedDay);
@@ -166,7 +261,8 @@ public class ScheduleFormController {
     private void drawDay(LocalDate day) {
         var from = day.atTime(0, 0);
         var to = day.plusDays(1).atTime(0, 0);
-        var appts = apptDao.findBetween(from.toString(), to.toString());
+        var appts = apptDao.findBetween(from, to);
+        rememberDrawn(from, to, appts);
 
         double height = DAY_HEADER_OFFSET + (DAY_END_HOUR - DAY_START_HOUR) * HOUR_PIXELS;
         canvas.setPrefHeight(height);
@@ -190,19 +286,11 @@ public class ScheduleFormController {
         addHourLines(canvas.getPrefWidth());
 
         // --- Időpontok elrendezése és kirajzolása ---
-        var placedList = layoutDayAppointments(appts);
-
-        for (var placed : placedList) {
-            var a = placed.appt;
-            LocalDateTime start;
-            try {
-                start = LocalDateTime.parse(a.getStartTs(), LDT_FMT);
-            } catch (DateTimeParseException e) {
-                continue; // Hibás dátum, kihagyjuk
-            }
+        int gridStartMin = Appointment.toEpochMinutes(day.atTime(DAY_START_HOUR, 0));
 
-            double minutesFromStart = Duration
-                    .between(day.atTime(DAY_START_HOUR, 0), start).toMinutes();
+        for (var placed : layout(appts).placements()) {
+            var a = placed.item();
+            double minutesFromStart = placed.start() - gridStartMin;
 
             // JAVÍTVA (typo): + + -> +
             double y = DAY_HEADER_OFFSET
@@ -212,8 +300,8 @@ public class ScheduleFormController {
 
             // Szélesség és pozíció az oszlop-elosztás alapján
             double fullWidth = 980; // Teljes elérhető szélesség
-            double w = fullWidth / placed.totalCols;
-            double x = placed.columnIndex * w;
+            double w = fullWidth / placed.columns();
+            double x = placed.column() * w;
 
             var block = makeBlock(a, x, y, w - 4, h); // -4px margó
             canvas.getChildren().add(block);
@@ -229,7 +317,8 @@ public class ScheduleFormController {
     private void drawWeek(LocalDate monday) {
         var from = monday.atStartOfDay();
         var to = monday.plusDays(7).atStartOfDay();
-        var appts = apptDao.findBetween(from.toString(), to.toString());
+        var appts = apptDao.findBetween(from, to);
+        rememberDrawn(from, to, appts);
 
         double height = (DAY_END_HOUR - DAY_START_HOUR) * HOUR_PIXELS;
         double totalWidth = COL_WIDTH * 7 + 10;
@@ -254,15 +343,14 @@ public class ScheduleFormController {
         List<List<Appointment>> perDay = new ArrayList<>();
         for (int i = 0; i < 7; i++) perDay.add(new ArrayList<>());
 
+        int mondayMin = Appointment.toEpochMinutes(from);
         for (var a : appts) {
-            LocalDateTime start;
-            try {
-                start = LocalDateTime.parse(a.getStartTs(), LDT_FMT);
-            } catch (DateTimeParseException e) {
+            Integer startMin = a.getStartEpochMin();
+            if (startMin == null) {
                 continue; // Hibás dátum, kihagyjuk
             }
-            
-            int dayIndex = (int) ChronoUnit.DAYS.between(monday, start.toLocalDate());
+
+            int dayIndex = Math.floorDiv(startMin - mondayMin, MINUTES_PER_DAY);
             if (dayIndex >= 0 && dayIndex <= 6) {
                 perDay.get(dayIndex).add(a);
             }
@@ -270,21 +358,11 @@ public class ScheduleFormController {
 
         // 2) Minden nap kirajzolása (a saját oszlop-elosztásával)
         for (int dayIndex = 0; dayIndex < 7; dayIndex++) {
-            var dayList = perDay.get(dayIndex);
-            var placedList = layoutDayAppointments(dayList);
-
-            for (var placed : placedList) {
-                var a = placed.appt;
-                LocalDateTime start;
-                try {
-                    start = LocalDateTime.parse(a.getStartTs(), LDT_FMT);
-                } catch (DateTimeParseException e) {
-                    continue;
-                }
-                
-                double minutesFromStart = Duration
-                        .between(start.toLocalDate().atTime(DAY_START_HOUR, 0), start)
-                        .toMinutes();
+            int gridStartMin = mondayMin + dayIndex * MINUTES_PER_DAY + DAY_START_HOUR * 60;
+
+            for (var placed : layout(perDay.get(dayIndex)).placements()) {
+                var a = placed.item();
+                double minutesFromStart = placed.start() - gridStartMin;
 
                 // Napi oszlop bal széle
                 double baseX = dayIndex * COL_WIDTH + 4;
@@ -295,8 +373,8 @@ public class ScheduleFormController {
 
                 // Elosztás az oszlopon belül
                 double fullWidth = COL_WIDTH - 8;
-                double w = fullWidth / placed.totalCols;
-                double x = baseX + placed.columnIndex * w;
+                double w = fullWidth / placed.columns();
+                double x = baseX + placed.column() * w;
 
                 var block = makeBlock(a, x, y, w - 4, h); // -4px margó
                 canvas.getChildren().add(block);
@@ -304,6 +382,24 @@ public class ScheduleFormController {
         }
     }
 
+    /**
+     * Megjegyzi a kirajzolt időszakot és a blokkokon látható azonosítókat
+     * (ezek alapján dönt az eseménykezelő az újrarajzolásról).
+     */
+    private void rememberDrawn(LocalDateTime from, LocalDateTime to, List<Appointment> appts) {
+        drawnFromMin = Appointment.toEpochMinutes(from);
+        drawnToMin = Appointment.toEpochMinutes(to);
+        for (var a : appts) {
+            drawnAppointments.add(a.getId());
+            if (a.getCustomerId() != null) {
+                drawnCustomers.add(a.getCustomerId());
+            }
+            if (a.getVehicleId() != null) {
+                drawnVehicles.add(a.getVehicleId());
+            }
+        }
+    }
+
     // --- Blokk készítő + kattintás kezelő ---
 
     /**
@@ -332,14 +428,9 @@ public class ScheduleFormController {
                 break;
         }
 
-        // Név és rendszám megkeresése a cache-ből
-        // JAVÍTVA: Integer-ek összehasonlítása Objects.equals-szel
-        String cust = customers.stream()
-                .filter(c -> Objects.equals(c.getId(), a.getCustomerId()))
-                .findFirst().map(Customer::getName).orElse("Ismeretlen ügyfél");
-        String veh = vehicles.stream()
-                .filter(v -> Objects.equals(v.getId(), a.getVehicleId()))
-                .findFirst().map(Vehicle::getPlate).orElse("Ismeretlen jármű");
+        // Név és rendszám: a lekérdezés már JOIN-olva hozza
+        String cust = Objects.requireNonNullElse(a.getOwnerName(), "Ismeretlen ügyfél");
+        String veh = Objects.requireNonNullElse(a.getVehiclePlate(), "Ismeretlen jármű");
 
         var l1 = new Label(cust);
         var l2 = new Label(veh);
@@ -351,9 +442,8 @@ public class ScheduleFormController {
         box.setOnMouseClicked(e -> {
             e.consume();
             // A 'Window owner' az első paraméter.
-            if (Forms.openAppointmentDialog(canvas.getScene().getWindow(), a)) {
-                reload(); // Ha mentés történt, újrarajzolunk
-            }
+            // Mentés után az AppointmentChanged esemény rajzol újra
+            Forms.openAppointmentDialog(canvas.getScene().getWindow(), a);
         });
 
         return box;
@@ -392,79 +482,13 @@ public class ScheduleFormController {
     // --- ELRENDEZÉSI LOGIKA (Ütközéskezelés) ---
 
     /**
-     * Segédosztály az elrendezéshez.
+     * Egy nap (vagy oszlop) időpontjainak oszlopokra bontása.
+     * A BookingIndex sweep-line algoritmusa tetszőleges átfedési mélységnél
+     * is helyes kiosztást ad (O(n log n)); minden átfedési csoport annyi
+     * oszlopra oszlik, ahány egyszerre futó időpontot tartalmaz.
      */
-    private static class PlacedAppt {
-        Appointment appt;
-        int columnIndex;  // 0 vagy 1
-        int totalCols;    // 1 vagy 2 az adott "overlap-csoportban"
-    }
-
-    /**
-     * Egy adott nap időpontjait (ugyanabban az oszlopban / napon) széthasítja
-     * max 2 oszlopra, ha átfedés van.
-     * Feltételezi, hogy nincs 3+ átfedés, mert azt az üzleti logika tiltja.
-     */
-    private List<PlacedAppt> layoutDayAppointments(List<Appointment> apptsForThatDay) {
-        // Rendezzük kezdési idő szerint
-        apptsForThatDay.sort((a, b) -> {
-            try {
-                // Formatter használata a parsoláshoz
-                var sa = LocalDateTime.parse(a.getStartTs(), LDT_FMT);
-                var sb = LocalDateTime.parse(b.getStartTs(), LDT_FMT);
-                return sa.compareTo(sb);
-            } catch (DateTimeParseException e) {
-                return 0;
-            }
-        });
-
-        List<PlacedAppt> placed = new ArrayList<>();
-
-        for (Appointment current : apptsForThatDay) {
-            LocalDateTime curStart, curEnd;
-            try {
-                curStart = LocalDateTime.parse(current.getStartTs(), LDT_FMT);
-                curEnd = curStart.plusMinutes(current.getDurationMinutes());
-            } catch (DateTimeParseException e) {
-                continue; // Hibás dátum, kihagyjuk
-            }
-
-            // Nézzük meg, ütközik-e már lerakottal
-            PlacedAppt conflict = null;
-            for (PlacedAppt p : placed) {
-                try {
-                    LocalDateTime pStart = LocalDateTime.parse(p.appt.getStartTs(), LDT_FMT);
-                    LocalDateTime pEnd = pStart.plusMinutes(p.appt.getDurationMinutes());
-
-                    // Átfedés ellenőrzés
-                    boolean overlap = pStart.isBefore(curEnd) && pEnd.isAfter(curStart);
-                    if (overlap) {
-                        conflict = p;
-                        break;
-                    }
-                } catch (DateTimeParseException e) {
-                    // ignore
-                }
-            }
-
-            PlacedAppt mine = new PlacedAppt();
-            mine.appt = current;
-
-            if (conflict == null) {
-                // Nincs ütközés -> egyedül van
-                mine.columnIndex = 0;
-                mine.totalCols = 1;
-            } else {
-                // Van ütközés -> ketten egymás mellett
-                // (Feltételezzük, hogy max 2-es ütközés lehet)
-                mine.columnIndex = (conflict.columnIndex == 0) ? 1 : 0;
-                conflict.totalCols = 2; // Frissítjük a másikat is
-                mine.totalCols = 2;
-            }
-            placed.add(mine);
-        }
-        
-        return placed;
+    private BookingIndex<Appointment> layout(List<Appointment> apptsForThatDay) {
+        return BookingIndex.of(apptsForThatDay, Appointment::getStartEpochMin, Appointment::getEndEpochMin);
     }
 
     // --- UI Segédfüggvények (Alerts) ---
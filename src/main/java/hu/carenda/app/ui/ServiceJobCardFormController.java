@@ -1,16 +1,5 @@
 package hu.carenda.app.ui;
 
-// PDF generáláshoz szükséges importok
-import com.lowagie.text.Document;
-import com.lowagie.text.Element;
-import com.lowagie.text.Font;
-import com.lowagie.text.PageSize;
-import com.lowagie.text.Paragraph;
-import com.lowagie.text.Rectangle;
-import com.lowagie.text.pdf.PdfPCell;
-import com.lowagie.text.pdf.PdfPTable;
-import com.lowagie.text.pdf.PdfWriter;
-
 import hu.carenda.app.model.Customer;
 import hu.carenda.app.model.Vehicle;
 import hu.carenda.app.repository.CustomerDao;
@@ -23,6 +12,9 @@ import hu.carenda.app.model.User;
 import hu.carenda.app.repository.ServiceJobCardPartDao;
 import hu.carenda.app.repository.ServiceJobCardWorkDescDao;
 import hu.carenda.app.repository.UserDao;
+import hu.carenda.app.pdf.JobCardDocument;
+import hu.carenda.app.pdf.JobCardPdfRenderer;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.BooleanBinding;
 import javafx.util.StringConverter;
@@ -33,16 +25,17 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.TextFieldTableCell;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
-import java.io.FileOutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 
 /**
  * A Munkalap űrlap (serviceJobCard-form.fxml) vezérlője.
- * Felelős a munkalapok létrehozásáért, szerkesztéséért, mentéséért és PDF exportjáért.
+ * Felelős a munkalapok létrehozásáért, szerkesztéséért, mentéséért és PDF exportjáért
+ * (a PDF-et a {@link JobCardPdfRenderer} készíti, a háttérben).
  */
 public class ServiceJobCardFormController {
 
@@ -128,6 +121,7 @@ public class ServiceJobCardFormController {
     private final UserDao userDao = new UserDao();
     private final ServiceJobCardWorkDescDao workDescDao = new ServiceJobCardWorkDescDao();
     private final ServiceJobCardPartDao partDao = new ServiceJobCardPartDao();
+    private final JobCardPdfRenderer pdfRenderer = new JobCardPdfRenderer();
 
     // ---------- Táblázat Adatforrások ----------
     private final ObservableList<ServiceJobCardWorkDesc> workdescItems = FXCollections.observableArrayList();
@@ -467,10 +461,8 @@ public class ServiceJobCardFormController {
 
         // Ha új a munkalap, gondoskodunk pár alapértelmezett értékről
         if (isNew) {
-            // Munkalapszám generálása, ha nincs
-            if (!notBlank(editing.getJobcard_no())) {
-                editing.setJobcard_no(jobCardDao.generateNextJobCardNo());
-            }
+            // A munkalapszámot (ha üresen marad) a mentés osztja ki, így két
+            // egyszerre nyitott űrlap nem kaphatja ugyanazt a számot.
             // Státusz beállítása OPEN-re
             if (!notBlank(editing.getStatus())) {
                 editing.setStatus("OPEN");
@@ -737,27 +729,12 @@ public class ServiceJobCardFormController {
             // 1. GUI -> 'editing' objektum frissítése
             collectFormDataToModel();
 
-            // 2. Fő munkalap mentése (insert vagy update)
-            boolean isNew = (editing.getId() == null);
-            if (isNew) {
-                // Beszúráskor a DAO visszakapja az új ID-t és beállítja az 'editing' objektumra
-                jobCardDao.insert(editing);
-            } else {
-                jobCardDao.update(editing);
-            }
-
-            // Mostantól biztos, hogy editing.getId() érvényes
-            Integer sjcId = editing.getId();
-            if (sjcId == null) {
-                // Ez nem történhet meg, ha a DAO helyesen működik
-                showError("Kritikus hiba", "Nem sikerült ID-t kapni a munkalap mentésekor.");
-                return;
-            }
-
-            // 3. Kapcsolódó tételek mentése (Delete / Insert stratégia)
-            saveChildItems(sjcId);
+            // 2. Munkalap és tételei mentése egy tranzakcióban
+            //    (új munkalapnál a DAO beállítja az új ID-t az 'editing' objektumra;
+            //    a tételeknél csak a változott sorokat írja ki)
+            jobCardDao.saveWithItems(editing, workdescItems, partItems);
 
-            // 4. Ablak bezárása siker jelzéssel
+            // 3. Ablak bezárása siker jelzéssel
             closeWindow(true);
 
         } catch (Exception ex) {
@@ -825,29 +802,6 @@ public class ServiceJobCardFormController {
         }
     }
 
-    /**
-     * Elmenti a munka- és alkatrész-tételeket a munkalaphoz.
-     * (Delete / Insert stratégiát használ)
-     * @param sjcId A szülő munkalap ID-ja.
-     */
-    private void saveChildItems(Integer sjcId) {
-        // 1. Régi tételek törlése
-        workDescDao.deleteByJobCard(sjcId);
-        partDao.deleteByJobCard(sjcId);
-
-        // 2. Új tételek beszúrása az aktuális listából
-        int lineNo = 1;
-        for (ServiceJobCardWorkDesc w : workdescItems) {
-            workDescDao.insert(sjcId, w.getName(), w.getHours(), w.getRate_cents(), w.getVat_percent(), lineNo++);
-        }
-
-        int partLineNo = 1;
-        for (ServiceJobCardPart p : partItems) {
-            partDao.insert(sjcId, p.getSku(), p.getName(), p.getQuantity(), p.getUnit_price_cents(), p.getVat_percent(), partLineNo++);
-        }
-    }
-
-
     /**
      * A "Mégse" gomb eseménykezelője.
      * Bezárja az ablakot mentés nélkül.
@@ -959,183 +913,72 @@ public class ServiceJobCardFormController {
 
     // --- PDF Generálás ---
 
+    /**
+     * A "PDF mentés" gomb eseménykezelője.
+     * Az űrlap aktuális állapotáról pillanatképet készít (JavaFX szálon), a PDF-et
+     * pedig a háttérben rendereli, így a felület nem fagy le; a haladás a gombon látszik.
+     */
     @FXML
     private void onExportPdf() {
-        try {
-            // 1. Fájl helyének bekérése
-            FileChooser chooser = new FileChooser();
-            chooser.setTitle("Munkalap PDF mentése");
-            String safeJobNo = notBlank(editing.getJobcard_no())
-                    ? editing.getJobcard_no().replaceAll("[^0-9A-Za-z_-]", "_")
-                    : "munkalap";
-            chooser.setInitialFileName(safeJobNo + ".pdf");
-            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF Fájlok", "*.pdf"));
-            
-            java.io.File file = chooser.showSaveDialog(btnPdf.getScene().getWindow());
-            if (file == null) {
-                return; // User 'Cancel'-t nyomott
-            }
-
-            // 2. PDF generálása a háttérben
-            generatePdfToFile(file.getAbsolutePath());
-
-            // 3. Siker visszajelzése
-            showInfo("PDF Mentve", "A munkalap sikeresen mentve:\n" + file.getAbsolutePath());
+        // 1. Fájl helyének bekérése
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Munkalap PDF mentése");
+        String safeJobNo = notBlank(editing.getJobcard_no())
+                ? editing.getJobcard_no().replaceAll("[^0-9A-Za-z_-]", "_")
+                : "munkalap";
+        chooser.setInitialFileName(safeJobNo + ".pdf");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF Fájlok", "*.pdf"));
+
+        java.io.File file = chooser.showSaveDialog(btnPdf.getScene().getWindow());
+        if (file == null) {
+            return; // User 'Cancel'-t nyomott
+        }
 
+        // 2. Pillanatkép (a renderelő már nem nyúl UI elemhez)
+        JobCardDocument snapshot;
+        try {
+            collectFormDataToModel();
+            snapshot = JobCardDocument.of(editing, resolveCustomer(), resolveVehicle(), workdescItems, partItems);
         } catch (Exception ex) {
             ex.printStackTrace();
-            showError("PDF mentési hiba", "A PDF generálása sikertelen:\n" + ex.getMessage());
+            showError("PDF mentési hiba", "A PDF adatainak összegyűjtése sikertelen:\n" + ex.getMessage());
+            return;
         }
+
+        // 3. Renderelés a háttérben, visszajelzés a JavaFX szálon
+        String idleText = btnPdf.getText();
+        btnPdf.setDisable(true);
+        pdfRenderer.renderAsync(snapshot, file.toPath(),
+                        (done, step) -> Platform.runLater(() -> btnPdf.setText(String.format("PDF… %d%%", Math.round(done * 100)))))
+                .whenComplete((path, ex) -> Platform.runLater(() -> {
+                    btnPdf.setText(idleText);
+                    btnPdf.setDisable(false);
+                    if (ex != null) {
+                        Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+                        cause.printStackTrace();
+                        showError("PDF mentési hiba", "A PDF generálása sikertelen:\n" + cause.getMessage());
+                    } else {
+                        showInfo("PDF Mentve", "A munkalap sikeresen mentve:\n" + path);
+                    }
+                }));
     }
 
     /**
-     * Legenerálja a munkalap PDF-jét a megadott útvonalra.
-     * (OpenPDF library-t használ)
-     * @param path A célfájl teljes útvonala.
-     * @throws Exception Hiba esetén (pl. IO, dokumentum hiba)
+     * Az előtöltött ügyfél, vagy ha nincs, a munkalaphoz rendelt ügyfél az adatbázisból.
      */
-    private void generatePdfToFile(String path) throws Exception {
-        Document doc = new Document(PageSize.A4, 36, 36, 36, 36);
-        PdfWriter.getInstance(doc, new FileOutputStream(path));
-        doc.open();
-
-        // Betűtípusok
-        Font bold18 = new Font(Font.HELVETICA, 18, Font.BOLD);
-        Font bold12 = new Font(Font.HELVETICA, 12, Font.BOLD);
-        Font normal10 = new Font(Font.HELVETICA, 10, Font.NORMAL);
-
-        // --- Cím ---
-        doc.add(new Paragraph("Munkalap #" + nvl(editing.getJobcard_no()), bold18));
-        doc.add(new Paragraph("Állapot: " + nvl(editing.getStatus()), normal10));
-        doc.add(new Paragraph("Felvétel ideje: " + nvl(editing.getCreated_at()), normal10));
-        doc.add(new Paragraph(" ")); // Térköz
-
-        // --- Ügyfél és Jármű blokk (2 oszlopos táblázat) ---
-        String custBlock = "Ügyfél:\n"
-                + customerName.getText() + "\n"
-                + "Tel: " + phone.getText() + "\n"
-                + "Email: " + email.getText() + "\n";
-
-        String vehBlock = "Jármű:\n"
-                + "Rendszám: " + plate.getText() + "\n"
-                + "Típus: " + brand.getText() + " " + model.getText() + "\n"
-                + "Évjárat: " + year.getText() + "\n"
-                + "Km óra: " + odometerKm.getText() + " km\n";
-        
-        PdfPTable custVehTable = new PdfPTable(2);
-        custVehTable.setWidthPercentage(100);
-        custVehTable.setWidths(new float[]{1f, 1f});
-        custVehTable.addCell(makeCell(custBlock, normal10, 6f));
-        custVehTable.addCell(makeCell(vehBlock, normal10, 6f));
-        doc.add(custVehTable);
-        doc.add(new Paragraph(" "));
-
-        // --- Hiba leírása ---
-        if (notBlank(faultDesc.getText())) {
-             doc.add(new Paragraph("Hiba leírása:", bold12));
-             doc.add(new Paragraph(faultDesc.getText(), normal10));
-             doc.add(new Paragraph(" "));
-        }
-        
-        // --- Elvégzett munka táblázat ---
-        doc.add(new Paragraph("Elvégzett munka", bold12));
-        PdfPTable workTable = new PdfPTable(6);
-        workTable.setWidthPercentage(100);
-        workTable.setWidths(new float[]{3f, 1f, 1f, 1f, 1f, 1f});
-
-        addHeaderCell(workTable, "Munka");
-        addHeaderCell(workTable, "Óra");
-        addHeaderCell(workTable, "Egységár (Ft)");
-        addHeaderCell(workTable, "ÁFA %");
-        addHeaderCell(workTable, "Nettó (Ft)");
-        addHeaderCell(workTable, "Bruttó (Ft)");
-
-        for (ServiceJobCardWorkDesc w : workdescItems) {
-            workTable.addCell(makeCell(w.getName(), normal10));
-            workTable.addCell(makeCell(String.valueOf(w.getHours()), normal10));
-            workTable.addCell(makeCell(String.valueOf(w.getRate_cents() / 100), normal10));
-            workTable.addCell(makeCell(String.valueOf(w.getVat_percent()), normal10));
-            workTable.addCell(makeCell(String.valueOf(calcNetForRow(w)), normal10));
-            workTable.addCell(makeCell(String.valueOf(calcGrossForRow(w)), normal10));
-        }
-        doc.add(workTable);
-        doc.add(new Paragraph(" "));
-
-        // --- Alkatrészek táblázat ---
-        doc.add(new Paragraph("Felhasznált anyagok / alkatrészek", bold12));
-        PdfPTable partTable = new PdfPTable(7);
-        partTable.setWidthPercentage(100);
-        partTable.setWidths(new float[]{1.5f, 2f, 1f, 1f, 1f, 1f, 1f});
-
-        addHeaderCell(partTable, "Cikkszám");
-        addHeaderCell(partTable, "Megnevezés");
-        addHeaderCell(partTable, "Menny.");
-        addHeaderCell(partTable, "Egységár (Ft)");
-        addHeaderCell(partTable, "ÁFA %");
-        addHeaderCell(partTable, "Nettó (Ft)");
-        addHeaderCell(partTable, "Bruttó (Ft)");
-
-        for (ServiceJobCardPart p : partItems) {
-            partTable.addCell(makeCell(p.getSku(), normal10));
-            partTable.addCell(makeCell(p.getName(), normal10));
-            partTable.addCell(makeCell(String.valueOf(p.getQuantity()), normal10));
-            partTable.addCell(makeCell(String.valueOf(p.getUnit_price_cents() / 100), normal10));
-            partTable.addCell(makeCell(String.valueOf(p.getVat_percent()), normal10));
-            partTable.addCell(makeCell(String.valueOf(calcNetForPartRow(p)), normal10));
-            partTable.addCell(makeCell(String.valueOf(calcGrossForPartRow(p)), normal10));
-        }
-        doc.add(partTable);
-        doc.add(new Paragraph(" "));
-
-        // --- Összesítés ---
-        doc.add(new Paragraph("Összesítés", bold12));
-        PdfPTable totalsTable = new PdfPTable(2);
-        totalsTable.setWidthPercentage(60);
-        totalsTable.setHorizontalAlignment(Element.ALIGN_RIGHT);
-        totalsTable.setWidths(new float[]{3f, 1f});
-
-        addTotalsRow(totalsTable, "Részösszeg (nettó):", subtotalNet.getText() + " Ft", normal10, normal10);
-        addTotalsRow(totalsTable, "ÁFA összege:", vatAmount.getText() + " Ft", normal10, normal10);
-        addTotalsRow(totalsTable, "Végösszeg (bruttó):", totalGross.getText() + " Ft", bold12, bold12);
-        addTotalsRow(totalsTable, "Előleg:", advance.getText() + " Ft", normal10, normal10);
-        addTotalsRow(totalsTable, "Fizetendő:", amountDue.getText() + " Ft", bold12, bold12);
-
-        doc.add(totalsTable);
-
-        doc.close();
+    private Customer resolveCustomer() {
+        if (customerData != null) return customerData;
+        return editing.getCustomer_id() != null ? customerDao.findById(editing.getCustomer_id()) : null;
     }
 
-    // --- PDF Cella Segédek ---
-    private void addHeaderCell(PdfPTable table, String text) {
-        Font font = new Font(Font.HELVETICA, 10, Font.BOLD);
-        PdfPCell cell = new PdfPCell(new Paragraph(text, font));
-        cell.setBackgroundColor(new java.awt.Color(230, 230, 230));
-        cell.setPadding(4f);
-        table.addCell(cell);
-    }
-    private PdfPCell makeCell(String text, Font font) {
-        return makeCell(text, font, 4f);
-    }
-    private PdfPCell makeCell(String text, Font font, float padding) {
-        PdfPCell cell = new PdfPCell(new Paragraph(text == null ? "" : text, font));
-        cell.setPadding(padding);
-        return cell;
-    }
-    private void addTotalsRow(PdfPTable table, String label, String value, Font lf, Font rf) {
-        PdfPCell c1 = new PdfPCell(new Paragraph(label, lf));
-        c1.setBorder(Rectangle.NO_BORDER);
-        c1.setHorizontalAlignment(Element.ALIGN_RIGHT);
-        c1.setPadding(2f);
-
-        PdfPCell c2 = new PdfPCell(new Paragraph(value, rf));
-        c2.setBorder(Rectangle.NO_BORDER);
-        c2.setHorizontalAlignment(Element.ALIGN_RIGHT);
-        c2.setPadding(2f);
-        
-        table.addCell(c1);
-        table.addCell(c2);
+    /**
+     * Az előtöltött jármű, vagy ha nincs, a munkalaphoz rendelt jármű az adatbázisból.
+     */
+    private Vehicle resolveVehicle() {
+        if (vehicleData != null) return vehicleData;
+        return editing.getVehicle_id() != null ? vehicleDao.findById(editing.getVehicle_id()) : null;
     }
-    
+
     // --- UI Segédfüggvények (Alerts) ---
 
     private void showInfo(String title, String message) {
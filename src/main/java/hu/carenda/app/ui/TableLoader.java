@@ -0,0 +1,425 @@
+package hu.carenda.app.ui;
+
+import hu.carenda.app.repository.ChangeTracker;
+import hu.carenda.app.repository.ChangeTracker.Dataset;
+import hu.carenda.app.repository.ChangeTracker.Stamp;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Service;
+import javafx.concurrent.Task;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Egy táblázat adatainak háttérszálon történő betöltése.
+ *
+ * A DAO lekérdezés egy háttér executoron fut, így a JavaFX szál nem fagy le,
+ * amíg az SQLite dolgozik. Egy újabb {@link #load(Supplier)} hívás megszakítja
+ * a még futó (elavult) betöltést, így mindig csak a legutolsó kérés eredménye
+ * kerül a táblázatba. Az eredményt a Service a JavaFX szálon adja át.
+ *
+ * Lapozott módban ({@link #loadPaged(PageQuery, int)}) csak az első lapot tölti be,
+ * a többit görgetés közben: amikor a lista végéhez közeli sor megjelenik,
+ * lekéri a következő lapot (keyset: az utolsó betöltött sor után).
+ *
+ * A betöltő megjegyzi, hogy a függő adathalmazok ({@link ChangeTracker}) melyik
+ * verzióját látta utoljára, így {@link #isStale()} megmondja, kell-e újratölteni.
+ *
+ * Célzott frissítés ({@link #patchRow}, {@link #patchWhere}): egy írás után (domain
+ * esemény) csak az érintett sorokat olvassa újra, és cseréli / törli / szúrja be a
+ * listában, teljes újratöltés nélkül. A sikeres javítás az esemény
+ * {@link ChangeTracker.Stamp}-je szerint pontosan a változás utáni verziót nyugtázza; ha a javítás nem végezhető el biztonságosan (pl. keresési találatok
+ * közé kellene új sort tenni), a tábla elavult marad, és az {@link #setOnStale}
+ * visszahívás dönt az újratöltésről.
+ *
+ * Csak a JavaFX szálról hívható.
+ *
+ * @param <T> A táblázat sorainak típusa.
+ */
+final class TableLoader<T> {
+
+    /**
+     * Egy lap lekérdezése (háttérszálon fut).
+     *
+     * @param <T> A sorok típusa.
+     */
+    @FunctionalInterface
+    interface PageQuery<T> {
+        /**
+         * @param after Az előző lap utolsó sora, vagy null az első laphoz.
+         * @param limit A lap mérete.
+         * @return Legfeljebb limit sor, a szerveroldali rendezés szerint.
+         */
+        List<T> fetch(T after, int limit);
+    }
+
+    /** Közös háttérszálak az összes táblázathoz (az olvasó pool méretéhez igazítva). */
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(4, new LoaderThreadFactory());
+
+    /** A célzott frissítések sorainak olvasása: egyetlen szál, így az események sorrendje megmarad. */
+    private static final ExecutorService PATCH_EXECUTOR = Executors.newSingleThreadExecutor(new LoaderThreadFactory());
+
+    /** Ennél több érintett sornál olcsóbb a teljes újratöltés, mint soronként olvasni. */
+    private static final int MAX_PATCH_ROWS = 50;
+
+    /** Ennyi sorral a lista vége előtt kérjük le a következő lapot. */
+    private static final int PREFETCH_ROWS = 20;
+
+    /** Egy betöltés eredménye: a sorok, és hogy a meglévők után fűzzük-e őket. */
+    private record Result<T>(List<T> rows, boolean append) {
+    }
+
+    private final String name;
+    private final TableView<T> table;
+    private final ObservableList<T> target;
+    private final Node emptyPlaceholder;
+    private final ProgressIndicator loadingPlaceholder = new ProgressIndicator();
+    private final Service<Result<T>> service;
+    private final Dataset[] dependsOn;
+    private final ToIntFunction<T> idOf;
+
+    /** A teljes lista rendezése (a lekérdezés ORDER BY-ja), ha a felhasználó nem rendezett át. */
+    private final Comparator<T> defaultOrder;
+
+    /** Akkor hívódik, ha egy változást nem lehetett célzottan átvezetni (a tábla elavult). */
+    private Runnable onStale = () -> { };
+
+    /** true, ha a legutóbbi betöltés a teljes listát hozta (nem keresési találatokat). */
+    private boolean complete;
+
+    /** Minden betöltés indításakor nő: az ennél régebbi javítások eredményét eldobjuk. */
+    private long loadSeq;
+
+    /** A következő (vagy éppen futó) betöltés lekérdezése. */
+    private Supplier<Result<T>> query;
+
+    /** Lapozott mód: a lap lekérdezése és mérete (null, ha a teljes lista látszik). */
+    private PageQuery<T> pageQuery;
+    private int pageSize;
+
+    /** Lapozott módban: van-e még be nem töltött lap. */
+    private boolean hasMore;
+
+    /** A futó betöltés indításakor érvényes adatverzió. */
+    private long pendingVersion;
+
+    /** A táblázatban látható adatok verziója (-1 = még nem töltöttünk be). */
+    private long loadedVersion = -1;
+
+    /**
+     * @param name         A táblázat neve (hibaüzenetekhez).
+     * @param table        A táblázat, amelynek a placeholder-ét kezeljük.
+     * @param target       A táblázat adatlistája.
+     * @param idOf         A sor azonosítója (célzott frissítéshez).
+     * @param defaultOrder A teljes lista rendezése új sor beszúrásához (null: új sornál újratöltés).
+     * @param dependsOn    Az adathalmazok, amelyekből a táblázat sorai származnak.
+     */
+    TableLoader(String name, TableView<T> table, ObservableList<T> target,
+                ToIntFunction<T> idOf, Comparator<T> defaultOrder, Dataset... dependsOn) {
+        this.name = name;
+        this.dependsOn = dependsOn;
+        this.idOf = idOf;
+        this.defaultOrder = defaultOrder;
+        this.table = table;
+        this.target = target;
+        this.emptyPlaceholder = table.getPlaceholder() != null ? table.getPlaceholder() : new Label("Nincs megjeleníthető adat.");
+        this.loadingPlaceholder.setMaxSize(40, 40);
+
+        this.service = new Service<>() {
+            @Override
+            protected Task<Result<T>> createTask() {
+                Supplier<Result<T>> q = query;
+                return new Task<>() {
+                    @Override
+                    protected Result<T> call() {
+                        return q.get();
+                    }
+                };
+            }
+        };
+        service.setExecutor(EXECUTOR);
+        service.setOnRunning(e -> table.setPlaceholder(loadingPlaceholder));
+        service.setOnSucceeded(e -> {
+            Result<T> r = service.getValue();
+            if (r.append()) {
+                target.addAll(r.rows());
+            } else {
+                target.setAll(r.rows());
+                loadedVersion = pendingVersion;
+            }
+            // Teljes lap érkezett: lehet még következő
+            hasMore = pageQuery != null && r.rows().size() >= pageSize;
+            table.setPlaceholder(emptyPlaceholder);
+        });
+        service.setOnFailed(e -> {
+            Throwable ex = service.getException();
+            System.err.println("[UI] Betöltési hiba (" + name + "): " + ex);
+            table.setPlaceholder(new Label("Hiba a betöltéskor: " + ex.getMessage()));
+        });
+    }
+
+    /**
+     * Elindítja a betöltést a háttérben; a még futó korábbi betöltést megszakítja.
+     *
+     * @param query    A lekérdezés (háttérszálon fut, UI elemet NEM érinthet).
+     * @param complete true, ha a lekérdezés a teljes listát adja (nem szűrt keresés):
+     *                 csak ilyenkor szúrható be célzottan új sor.
+     */
+    void load(Supplier<List<T>> query, boolean complete) {
+        this.pageQuery = null;
+        this.complete = complete;
+        start(() -> new Result<>(query.get(), false));
+    }
+
+    /**
+     * Lapozott betöltés: az első lapot tölti be, a többit görgetéskor.
+     * A még futó korábbi betöltést megszakítja.
+     *
+     * @param query    A lap lekérdezése (háttérszálon fut).
+     * @param pageSize A lap mérete.
+     */
+    void loadPaged(PageQuery<T> query, int pageSize) {
+        if (table.getRowFactory() == null) {
+            installRowFactory();
+        }
+        this.pageQuery = query;
+        this.pageSize = pageSize;
+        this.complete = false; // a be nem töltött lapok miatt új sor helye nem ismert
+        start(() -> new Result<>(query.fetch(null, pageSize), false));
+    }
+
+    /**
+     * @return true, ha a táblázat lapozott módban van (nem a teljes lista látszik).
+     */
+    boolean isPaged() {
+        return pageQuery != null;
+    }
+
+    /**
+     * @return true, ha a táblázat még nem töltődött be, vagy azóta valamelyik
+     *         függő adathalmaz megváltozott.
+     */
+    boolean isStale() {
+        return loadedVersion != ChangeTracker.version(dependsOn);
+    }
+
+    /**
+     * @param onStale Hívódik (JavaFX szálon), ha egy változást nem lehetett célzottan
+     *                átvezetni; jellemzően újratölt, ha a tábla éppen látszik.
+     */
+    void setOnStale(Runnable onStale) {
+        this.onStale = onStale;
+    }
+
+    /**
+     * Egy sor célzott frissítése egy írás után: újraolvassa, és kicseréli, törli
+     * (ha a fetch null-t ad) vagy – teljes listánál – a helyére szúrja be.
+     *
+     * @param id    A megváltozott sor azonosítója.
+     * @param fetch A sor újraolvasása (háttérszálon fut); null, ha nem tartozik a listába.
+     * @param stamp A változás előtti / utáni verziók (az eseményből).
+     */
+    void patchRow(int id, IntFunction<T> fetch, Stamp stamp) {
+        patch(List.of(id), fetch, true, stamp);
+    }
+
+    /**
+     * A feltételnek megfelelő (már betöltött) sorok újraolvasása, pl. egy ügyfél
+     * átnevezésekor a hozzá tartozó járművek tulajdonosneve miatt. Ha egy sor sem
+     * érintett, csak nyugtázza a változást.
+     *
+     * @param affected Az érintett sorok feltétele.
+     * @param fetch    Egy sor újraolvasása (háttérszálon fut); null, ha kikerül a listából.
+     * @param stamp    A változás előtti / utáni verziók (az eseményből).
+     */
+    void patchWhere(Predicate<T> affected, IntFunction<T> fetch, Stamp stamp) {
+        List<Integer> ids = new ArrayList<>();
+        for (T row : target) {
+            if (affected.test(row)) {
+                ids.add(idOf.applyAsInt(row));
+            }
+        }
+        patch(ids, fetch, false, stamp);
+    }
+
+    private void patch(List<Integer> ids, IntFunction<T> fetch, boolean mayInsert, Stamp stamp) {
+        if (loadedVersion < 0 || loadedVersion >= stamp.after(dependsOn)) {
+            return; // még nem töltöttünk be, vagy a betöltött adat már tartalmazza a változást
+        }
+        if (service.isRunning() || ids.size() > MAX_PATCH_ROWS) {
+            onStale.run(); // a futó betöltés a commit előtti állapotot is olvashatta
+            return;
+        }
+
+        // Üres javítás is a közös szálon megy át, így a nyugtázások az események sorrendjében jönnek
+        long seq = loadSeq;
+        Runnable stale = onStale;
+        PATCH_EXECUTOR.execute(() -> {
+            List<T> rows = new ArrayList<>(ids.size());
+            try {
+                for (int id : ids) {
+                    rows.add(fetch.apply(id));
+                }
+            } catch (RuntimeException e) {
+                System.err.println("[UI] Sor frissítési hiba (" + name + "): " + e);
+                Platform.runLater(stale);
+                return;
+            }
+            Platform.runLater(() -> {
+                if (seq != loadSeq) {
+                    return; // közben újratöltés indult: az már a friss adatot hozza
+                }
+                if (service.isRunning()) {
+                    stale.run(); // éppen a következő lap töltődik: a javítás nem biztonságos
+                    return;
+                }
+                boolean applied = true;
+                for (int i = 0; i < ids.size(); i++) {
+                    applied &= apply(ids.get(i), rows.get(i), mayInsert);
+                }
+                if (applied) {
+                    acknowledge(stamp);
+                } else {
+                    stale.run();
+                }
+            });
+        });
+    }
+
+    /**
+     * Egy újraolvasott sor átvezetése a listába.
+     *
+     * @return false, ha a változást nem lehetett biztonságosan átvezetni.
+     */
+    private boolean apply(int id, T row, boolean mayInsert) {
+        int index = indexOf(id);
+        if (row == null) {
+            if (index >= 0) {
+                target.remove(index);
+            }
+            return true;
+        }
+
+        Comparator<T> order = currentOrder();
+        if (index >= 0) {
+            if (order == null || isPaged()) {
+                target.set(index, row);
+            } else {
+                // A rendezési kulcs (pl. név) is változhatott: a helyére tesszük
+                target.remove(index);
+                target.add(insertionPoint(order, row), row);
+            }
+            return true;
+        }
+        if (!mayInsert || !complete || order == null) {
+            return false; // szűrt / lapozott lista, vagy ismeretlen rendezés: nem tudjuk, hova kerülne
+        }
+        target.add(insertionPoint(order, row), row);
+        return true;
+    }
+
+    /**
+     * Egy átvezetett változás nyugtázása: ha a tábla pontosan a változás előtti verziót
+     * mutatta, most a változás utánit mutatja. Ha egy korábbi változás kimaradt, a tábla
+     * elavult marad (a verzió nem ugorhat át rajta).
+     */
+    private void acknowledge(Stamp stamp) {
+        if (loadedVersion == stamp.before(dependsOn)) {
+            loadedVersion = stamp.after(dependsOn);
+        }
+    }
+
+    /** A táblázatban érvényes rendezés: a felhasználóé (fejlécre kattintás), vagy az alapértelmezett. */
+    private Comparator<T> currentOrder() {
+        if (!table.getSortOrder().isEmpty()) {
+            return table.getComparator();
+        }
+        return defaultOrder;
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < target.size(); i++) {
+            if (idOf.applyAsInt(target.get(i)) == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Az első olyan pozíció, amely elé a sor a rendezés szerint kerül. */
+    private int insertionPoint(Comparator<T> order, T row) {
+        for (int i = 0; i < target.size(); i++) {
+            if (order.compare(row, target.get(i)) < 0) {
+                return i;
+            }
+        }
+        return target.size();
+    }
+
+    private void start(Supplier<Result<T>> query) {
+        this.query = query;
+        this.loadSeq++;
+        this.hasMore = false;
+        // A verziót a lekérdezés ELŐTT olvassuk: ha közben írás történik, a tábla elavult marad
+        this.pendingVersion = ChangeTracker.version(dependsOn);
+        service.restart(); // a futó Task-ot megszakítja (cancel), és újat indít
+    }
+
+    /**
+     * A következő lap betöltése, ha van még, és nem fut másik betöltés.
+     */
+    private void loadNextPage() {
+        if (pageQuery == null || !hasMore || service.isRunning() || target.isEmpty()) {
+            return;
+        }
+        PageQuery<T> q = pageQuery;
+        T last = target.get(target.size() - 1);
+        int limit = pageSize;
+        hasMore = false; // a válasz állítja vissza
+        query = () -> new Result<>(q.fetch(last, limit), true);
+        service.restart();
+    }
+
+    /**
+     * Sorgyár, amely a lista végéhez közeli sor megjelenésekor lekéri a következő lapot.
+     * A TableView csak a látható sorokhoz frissít cellát, így ez a görgetést követi.
+     */
+    private void installRowFactory() {
+        table.setRowFactory(tv -> new TableRow<>() {
+            @Override
+            protected void updateItem(T item, boolean empty) {
+                super.updateItem(item, empty);
+                if (!empty && hasMore && getIndex() >= target.size() - PREFETCH_ROWS) {
+                    Platform.runLater(TableLoader.this::loadNextPage); // ne a layout közben indítsunk
+                }
+            }
+        });
+    }
+
+    /** Daemon szálak, hogy a háttérbetöltés ne tartsa életben az alkalmazást kilépéskor. */
+    private static final class LoaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger seq = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "carenda-loader-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}